@@ -0,0 +1,209 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Generates the source text used as input by the benchmarks.
+ */
+public class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    /**
+     * Copyright template used by the benchmarks, in the format of the file
+     * given to the -copyright option.  The generated sources carry headers
+     * made from it, so they pass validation.
+     */
+    static final String COPYRIGHT_TEMPLATE =
+            " DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.\n" +
+            "\n" +
+            " Copyright YYYY Sun Microsystems, Inc. All rights reserved.\n" +
+            "\n" +
+            " The contents of this file are subject to the terms of either the GNU\n" +
+            " General Public License Version 2 only (\"GPL\") or the Common Development\n" +
+            " and Distribution License(\"CDDL\") (collectively, the \"License\").  You\n" +
+            " may not use this file except in compliance with the License. You can obtain\n" +
+            " a copy of the License at https://glassfish.dev.java.net/public/CDDL+GPL.html\n" +
+            " or glassfish/bootstrap/legal/LICENSE.txt.  See the License for the specific\n" +
+            " language governing permissions and limitations under the License.\n";
+
+    static final String YEARS = "1997-2011";
+
+    static final String HEADER = javaHeader(YEARS);
+
+    private static final String CODE_LINE = "    private int field = computeSomething(1, 2, \"text\");\n";
+    private static final String COMMENT = "    /*\n     * A comment about the next field.\n     */\n";
+
+    private static final String SHELL_CODE_LINE = "echo \"$FIELD\" | sed -e 's/a/b/' > \"$OUTPUT\"\n";
+    private static final String SHELL_COMMENT = "# A comment about the next line.\n";
+
+    /**
+     * Return the copyright template as a Java comment, with years in place
+     * of YYYY.
+     */
+    public static String javaHeader(String years) {
+        StringBuilder sb = new StringBuilder("/*\n");
+        for (String line : templateLines(years)) {
+            sb.append(" *").append(line).append("\n");
+        }
+        return sb.append(" */\n").toString();
+    }
+
+    /**
+     * Return the copyright template as a shell comment, with years in place
+     * of YYYY.
+     */
+    public static String shellHeader(String years) {
+        StringBuilder sb = new StringBuilder("#\n");
+        for (String line : templateLines(years)) {
+            sb.append("#").append(line).append("\n");
+        }
+        return sb.append("#\n").toString();
+    }
+
+    private static String[] templateLines(String years) {
+        return COPYRIGHT_TEMPLATE.replace("YYYY", years).split("\n");
+    }
+
+    /**
+     * Return a Java-like source of roughly size characters: a copyright header
+     * followed by code lines, with a block comment every linesPerComment lines
+     * (no comments if linesPerComment is 0).
+     */
+    public static String javaSource(int size, int linesPerComment) {
+        StringBuilder sb = new StringBuilder(size + CODE_LINE.length());
+        sb.append(HEADER);
+        sb.append("package com.example;\n\npublic class Generated {\n");
+        int line = 0;
+        while (sb.length() < size) {
+            if (linesPerComment > 0 && line % linesPerComment == 0) {
+                sb.append(COMMENT);
+            }
+            sb.append(CODE_LINE);
+            line++;
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    public static String javaSource(int size) {
+        return javaSource(size, 10);
+    }
+
+    /**
+     * Return a shell script of roughly size characters: a "#!" line and a
+     * copyright header followed by commands, with a comment line every
+     * linesPerComment lines (no comments if linesPerComment is 0).
+     */
+    public static String shellSource(int size, int linesPerComment) {
+        StringBuilder sb = new StringBuilder(size + SHELL_CODE_LINE.length());
+        sb.append("#!/bin/sh\n");
+        sb.append(shellHeader(YEARS));
+        sb.append("\n");
+        int line = 0;
+        while (sb.length() < size) {
+            if (linesPerComment > 0 && line % linesPerComment == 0) {
+                sb.append(SHELL_COMMENT);
+            }
+            sb.append(SHELL_CODE_LINE);
+            line++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write data to file.
+     */
+    public static void write(File file, String data) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)));
+        try {
+            writer.write(data);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Create a source tree under a new temporary directory: count files of
+     * roughly size characters, 50 to a directory, of which every fourth is
+     * a shell script and the others are Java sources.
+     */
+    public static File createTree(int count, int size, int linesPerComment) throws IOException {
+        File root = File.createTempFile("scanbench", "");
+        root.delete();
+        root.mkdir();
+        String java = javaSource(size, linesPerComment);
+        String shell = shellSource(size, linesPerComment);
+        File dir = null;
+        for (int i = 0; i < count; i++) {
+            if (i % 50 == 0) {
+                dir = new File(root, "dir" + i / 50);
+                dir.mkdir();
+            }
+            if (i % 4 == 3) {
+                write(new File(dir, "script" + i + ".sh"), shell);
+            } else {
+                write(new File(dir, "Source" + i + ".java"), java);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Delete file and, if it is a directory, everything in it.
+     */
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
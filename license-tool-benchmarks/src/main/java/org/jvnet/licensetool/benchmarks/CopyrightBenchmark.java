@@ -0,0 +1,151 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.benchmarks;
+
+import org.jvnet.licensetool.file.CommentBlock;
+import org.jvnet.licensetool.file.FileParser;
+import org.jvnet.licensetool.file.FileWrapper;
+import org.jvnet.licensetool.file.ParsedFile;
+import org.jvnet.licensetool.file.PlainBlock;
+import org.jvnet.licensetool.util.CompiledCopyrightTemplate;
+import org.jvnet.licensetool.util.CopyrightParser;
+import org.jvnet.licensetool.util.EditDistance;
+import org.jvnet.licensetool.util.LineIterator;
+import org.jvnet.licensetool.util.ToolUtil;
+import org.jvnet.licensetool.RecognizerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Parses and matches one copyright header against the template: a header
+ * that matches, one with other years (which still matches) and one with a
+ * changed word (which does not).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyrightBenchmark {
+    @Param({"same", "years", "changed"})
+    public String header;
+
+    private ParsedFile pfile;
+    private CommentBlock block;
+    private String comment;
+    private String templateText;
+    private String templateRegex;
+    private CompiledCopyrightTemplate template;
+
+    @Setup
+    public void parseHeader() throws IOException {
+        String source;
+        if (header.equals("same")) {
+            source = BenchmarkData.javaHeader(BenchmarkData.YEARS);
+        } else if (header.equals("years")) {
+            source = BenchmarkData.javaHeader("2010");
+        } else {
+            source = BenchmarkData.javaHeader(BenchmarkData.YEARS).replace("specific", "particular");
+        }
+        File file = File.createTempFile("copyrightbench", ".java");
+        try {
+            BenchmarkData.write(file, source + "class Generated {\n}\n");
+            FileWrapper fw = new FileWrapper(file);
+            FileParser parser = new RecognizerFactory().getDefaultRecognizer().getParser(fw);
+            pfile = parser.parseFile(fw);
+        } finally {
+            file.delete();
+        }
+        block = pfile.getComments().get(0);
+        comment = block.comment();
+        templateText = BenchmarkData.COPYRIGHT_TEMPLATE;
+        templateRegex = copyrightPattern(templateText);
+        template = new CompiledCopyrightTemplate(new PlainBlock(templateText));
+    }
+
+    // The regular expression LicenseTool.makeCopyrightPatternBlock makes of the template.
+    private static String copyrightPattern(String text) {
+        StringBuilder sb = new StringBuilder();
+        String quoted = Pattern.quote(text);
+        LineIterator lines = new LineIterator(quoted);
+        while (lines.next()) {
+            String line = lines.lineAsString();
+            if (line.contains("YYYY ")) {
+                line = line.replace("YYYY ", "\\E[0-9]{4}(-[0-9]{4})? \\Q");
+            } else if (line.contains("YYYY, ")) {
+                line = line.replace("YYYY, ", "\\E([0-9]{4}, )+\\Q");
+            }
+            sb.append(line);
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public CommentBlock.Copyright parseCopyright() {
+        CopyrightParser.parseCopyright(block, pfile);
+        return block.getCopyright();
+    }
+
+    @Benchmark
+    public boolean doesCopyrightMatch() {
+        return ToolUtil.doesCopyrightMatch(templateRegex, comment);
+    }
+
+    @Benchmark
+    public boolean compiledTemplateMatches() {
+        return template.matches(comment);
+    }
+
+    @Benchmark
+    public int editDistance() {
+        return EditDistance.editDistance(templateText, comment);
+    }
+
+    @Benchmark
+    public int boundedEditDistance() {
+        return EditDistance.editDistance(templateText, comment, 10);
+    }
+}
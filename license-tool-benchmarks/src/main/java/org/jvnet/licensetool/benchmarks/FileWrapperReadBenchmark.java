@@ -0,0 +1,107 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.benchmarks;
+
+import org.jvnet.licensetool.file.FileWrapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares FileWrapper.readAsString with the character at a time loop it
+ * used to have, on files of 1 KB, 100 KB and 10 MB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileWrapperReadBenchmark {
+    @Param({"1024", "102400", "10485760"})
+    public int size;
+
+    private File file;
+
+    @Setup
+    public void createFile() throws IOException {
+        file = File.createTempFile("readbench", ".java");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)));
+        try {
+            writer.write(BenchmarkData.javaSource(size));
+        } finally {
+            writer.close();
+        }
+    }
+
+    @TearDown
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Benchmark
+    public String readAsString() throws IOException {
+        FileWrapper fw = new FileWrapper(file);
+        fw.open(FileWrapper.OpenMode.READ);
+        try {
+            return fw.readAsString();
+        } finally {
+            fw.close();
+        }
+    }
+
+    // The loop readAsString used before it read in chunks.
+    @Benchmark
+    public String readPerChar() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+        try {
+            int i;
+            StringBuilder fileContents = new StringBuilder();
+            while ((i = reader.read()) != -1) {
+                fileContents.append((char) i);
+            }
+            return fileContents.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.benchmarks;
+
+import org.jvnet.licensetool.util.LineIterator;
+import org.jvnet.licensetool.util.ToolUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the regular expression that ToolUtil.splitToLines used to run
+ * with the LineIterator that replaced it, on inputs of 1 KB, 100 KB and
+ * 10 MB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineSplitBenchmark {
+    @Param({"1024", "102400", "10485760"})
+    public int size;
+
+    private String data;
+
+    @Setup
+    public void createData() {
+        data = BenchmarkData.javaSource(size);
+    }
+
+    // The body of splitToLines before LineIterator.
+    @Benchmark
+    public List<String> regexSplit() {
+        List<String> lines = new ArrayList<String>();
+        String patternStr = "(.+?)^";
+        Pattern pattern = Pattern.compile(patternStr, Pattern.MULTILINE | Pattern.DOTALL);
+        Matcher matcher = pattern.matcher(data);
+        int index = 0;// to store last match
+        while (matcher.find()) {
+            lines.add(matcher.group());
+            index = matcher.end();
+
+        }
+        //get the rest
+        lines.add(data.substring(index));
+        return lines;
+    }
+
+    @Benchmark
+    public List<String> splitToLines() {
+        return ToolUtil.splitToLines(data);
+    }
+
+    // Offsets only, as used by the parsers; no line is copied.
+    @Benchmark
+    public int lineIterator() {
+        LineIterator lines = new LineIterator(data);
+        int blank = 0;
+        while (lines.next()) {
+            if (lines.isBlank())
+                blank++;
+        }
+        return blank;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.benchmarks;
+
+import org.jvnet.licensetool.LineCommentFile;
+import org.jvnet.licensetool.MultiLineCommentFile;
+import org.jvnet.licensetool.file.Block;
+import org.jvnet.licensetool.file.FileWrapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits a Java source and a shell script into blocks, for files of 1 KB,
+ * 100 KB and 1 MB with no comments, a comment every 10 lines and a comment
+ * every other line.  The files are read from disk on every call, as they
+ * are during a scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"1024", "102400", "1048576"})
+    public int size;
+
+    // lines of code per comment; 0 for no comments
+    @Param({"0", "10", "2"})
+    public int linesPerComment;
+
+    private File javaFile;
+    private File shellFile;
+
+    @Setup
+    public void createFiles() throws IOException {
+        javaFile = File.createTempFile("parsebench", ".java");
+        BenchmarkData.write(javaFile, BenchmarkData.javaSource(size, linesPerComment));
+        shellFile = File.createTempFile("parsebench", ".sh");
+        BenchmarkData.write(shellFile, BenchmarkData.shellSource(size, linesPerComment));
+    }
+
+    @TearDown
+    public void deleteFiles() {
+        javaFile.delete();
+        shellFile.delete();
+    }
+
+    @Benchmark
+    public List<Block> multiLineCommentParseBlocks() throws IOException {
+        return MultiLineCommentFile.parseBlocks(new FileWrapper(javaFile), "/*", "*/", " *");
+    }
+
+    @Benchmark
+    public List<Block> lineCommentParseBlocks() throws IOException {
+        return LineCommentFile.parseBlocks(new FileWrapper(shellFile), "#");
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.benchmarks;
+
+import org.jvnet.licensetool.ActionFactory;
+import org.jvnet.licensetool.Daemon;
+import org.jvnet.licensetool.LicenseTool;
+import org.jvnet.licensetool.RecognizerFactory;
+import org.jvnet.licensetool.RunConfig;
+import org.jvnet.licensetool.Scanner;
+import org.jvnet.licensetool.file.FileWrapper;
+import org.jvnet.licensetool.util.HeaderCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Validates a generated tree of 1000 files end to end, as the validate
+ * mode of LicenseTool does, with one and with four threads.  Log output is
+ * turned off during the benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanBenchmark {
+    @Param({"1000"})
+    public int files;
+
+    @Param({"4096", "65536"})
+    public int size;
+
+    // lines of code per comment; 0 for no comments
+    @Param({"0", "10"})
+    public int linesPerComment;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private File root;
+    private File copyrightFile;
+    private Level logLevel;
+
+    @Setup
+    public void createTree() throws IOException {
+        root = BenchmarkData.createTree(files, size, linesPerComment);
+        copyrightFile = File.createTempFile("scanbench", ".txt");
+        BenchmarkData.write(copyrightFile, BenchmarkData.COPYRIGHT_TEMPLATE);
+        Logger logger = Logger.getLogger("org.jvnet.licensetool");
+        logLevel = logger.getLevel();
+        logger.setLevel(Level.OFF);
+    }
+
+    @TearDown
+    public void deleteTree() {
+        Logger.getLogger("org.jvnet.licensetool").setLevel(logLevel);
+        BenchmarkData.delete(root);
+        copyrightFile.delete();
+    }
+
+    @Benchmark
+    public boolean validate() throws IOException {
+        RunConfig config = new RunConfig(arguments());
+        Scanner scanner = new Scanner(config, config.getRoots());
+        Scanner.Action action = new ActionFactory(new HeaderCache(config.getCopyrightTemplate()))
+                .getValidateCopyrightAction(config, null);
+        return scanner.scan(new RecognizerFactory().getDefaultRecognizer(), action);
+    }
+
+    private LicenseTool.Arguments arguments() {
+        return new LicenseTool.Arguments() {
+            public boolean validate() {
+                return true;
+            }
+
+            public boolean verbose() {
+                return false;
+            }
+
+            public boolean dryrun() {
+                return false;
+            }
+
+            public List<File> roots() {
+                return Collections.singletonList(root);
+            }
+
+            public List<String> skipdirs() {
+                return Collections.emptyList();
+            }
+
+            public FileWrapper copyright() {
+                return new FileWrapper(copyrightFile);
+            }
+
+            public String startyear() {
+                return "1997";
+            }
+
+            public String endyear() {
+                return "";
+            }
+
+            public List<String> options() {
+                return Collections.emptyList();
+            }
+
+            public String vcs() {
+                return "";
+            }
+
+            public boolean uselastmodified() {
+                return false;
+            }
+
+            public int vcsthreads() {
+                return 0;
+            }
+
+            public int threads() {
+                return threads;
+            }
+
+            public long directthreshold() {
+                return FileWrapper.DEFAULT_DIRECT_THRESHOLD;
+            }
+
+            public String cache() {
+                return "";
+            }
+
+            public String metrics() {
+                return "";
+            }
+
+            public String catalog() {
+                return "";
+            }
+
+            public boolean daemon() {
+                return false;
+            }
+
+            public int port() {
+                return Daemon.DEFAULT_PORT;
+            }
+        };
+    }
+}
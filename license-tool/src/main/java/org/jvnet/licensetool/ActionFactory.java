@@ -44,17 +44,59 @@ import static org.jvnet.licensetool.Tags.COPYRIGHT_BLOCK_TAG;
 import static org.jvnet.licensetool.Tags.OWN_COPYRIGHT_TAG;
 
 import org.jvnet.licensetool.file.*;
+import org.jvnet.licensetool.util.CompiledCopyrightTemplate;
 import org.jvnet.licensetool.util.CopyrightParser;
+import org.jvnet.licensetool.util.HeaderCache;
+import org.jvnet.licensetool.util.KeywordMatcher;
+import org.jvnet.licensetool.util.LicenseCatalog;
+import org.jvnet.licensetool.util.LineIterator;
+import org.jvnet.licensetool.util.Metrics;
 import org.jvnet.licensetool.util.ToolUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.logging.Logger;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ActionFactory {
     private final String COPYRIGHT = "Copyright";
 
+    // Blocks that hold the copyright of one of our own licensors
+    private static final long OWN_COPYRIGHT_BLOCK = Block.tagMask(OWN_COPYRIGHT_TAG, COPYRIGHT_BLOCK_TAG);
+    private static final long TOP_COMMENT_BLOCK = Block.tagMask(CommentBlock.TOP_COMMENT_BLOCK);
+
+    // Keywords looked for in every copyright block: the CDDL marker first,
+    // then the licensors whose copyright is our own, as given by
+    // getKeywords()
+    private static final int CDDL_KEYWORD = 0;
+    private static final int FIRST_LICENSOR_KEYWORD = 1;
+
+    // The years of a copyright line, with the separator after them, and the
+    // year placeholder of the template they stand for
+    private static final Pattern COPYRIGHT_YEARS =
+            Pattern.compile("[Cc]opyright (?:\\([Cc]\\) )?([0-9]{4}(?:(?:, ?|-)[0-9]{4})*,? )");
+    private static final Pattern YEAR_PLACEHOLDER = Pattern.compile("YYYY,? ");
+
+    // null if comments are parsed and matched again for every file
+    private final HeaderCache headerCache;
+
+    public ActionFactory() {
+        this(null);
+    }
+
+    /**
+     * The actions made by this factory use headerCache, which must have been
+     * created for the same copyright template, to parse and match each
+     * distinct comment only once.
+     */
+    public ActionFactory(HeaderCache headerCache) {
+        this.headerCache = headerCache;
+    }
+
     /**
      * returns an action that returns true.  If verbose is true, the action
      * also displays the FileWrapper that was passed to it.
@@ -90,9 +132,17 @@ public class ActionFactory {
         };
     }
 
-    public Scanner.Action getValidateCopyrightAction(final PlainBlock copyrightBlock, final PlainBlock copyrightTemplateBlock, final LicenseTool.Arguments args) {
+    /**
+     * Returns an action that reports validation errors against the copyright
+     * template of config.  If cache is not null, files without validation
+     * errors are recorded in it.
+     */
+    public Scanner.Action getValidateCopyrightAction(final RunConfig config, final ValidationCache cache) {
+        final PlainBlock copyrightBlock = config.getCopyrightText();
+        final CompiledCopyrightTemplate copyrightTemplate = config.getCopyrightTemplate();
         trace("makeCopyrightBlockAction: copyrightText = " + copyrightBlock);
-
+        final int fuzzyDistance = config.getFuzzyDistance();
+        final KeywordMatcher keywords = getKeywords(config);
 
         return new Scanner.Action() {
             public String toString() {
@@ -102,42 +152,56 @@ public class ActionFactory {
             // Generally always return true, because we want to see ALL validation errors.
             public boolean evaluate(ParsedFile pfile) {
                 //tag blocks
-                boolean hadAnOldSunCopyright = tagBlocks(pfile, args);
+                boolean clean = true;
+                boolean hadAnOldSunCopyright = tagBlocks(pfile, keywords);
                 if (!hadAnOldSunCopyright) {
+                    clean = false;
                     validationError(null, "No Sun/Oracle Copyright header in ", pfile.getPath());
                 }
                 // There should be a Sun copyright block in the first block
                 int countSunCopyright = 0;
                 for (CommentBlock block : pfile.getComments()) {
-                    if (block.hasTags(OWN_COPYRIGHT_TAG, COPYRIGHT_BLOCK_TAG)) {
+                    if (block.hasTags(OWN_COPYRIGHT_BLOCK)) {
                         countSunCopyright++;
                         if (countSunCopyright > 1) {
+                            clean = false;
                             validationError(block, "More than one Sun/Oracle Copyright Block", pfile.getPath());
                             continue;
                         }
-                        if (block.hasTag(CommentBlock.TOP_COMMENT_BLOCK)) {
+                        if (block.hasTags(TOP_COMMENT_BLOCK)) {
                             //if (!(ToolUtil.areCommentsSimilar(copyrightBlock.contents(),block.comment()))) {
-                            if (!(ToolUtil.doesCopyrightMatch(copyrightTemplateBlock.contents(),block.comment()))) {
-                                // It should entirely match copyrightText
-                                validationError(block, "First block has incorrect copyright text", pfile.getPath());
+                            long start = Metrics.start();
+                            int mismatch = headerCache != null ? headerCache.mismatch(block)
+                                    : copyrightTemplate.mismatch(block.comment());
+                            Metrics.end(Metrics.Phase.TEMPLATE_MATCH, start);
+                            if (mismatch >= 0) {
+                                if (fuzzyDistance >= 0 && isSimilar(expectedText(copyrightBlock, block), block, fuzzyDistance)) {
+                                    trace("Copyright text is within " + fuzzyDistance + " edits of the template in " + pfile.getPath());
+                                } else {
+                                    // It should entirely match copyrightText
+                                    clean = false;
+                                    trace("Copyright text differs from the template at offset " + mismatch);
+                                    validationError(block, "First block has incorrect copyright text", pfile.getPath());
+                                }
                             }
                         } else {
+                            clean = false;
                             validationError(block, "Sun/Oracle Copyright Block is not the first comment block", pfile.getPath());
                         }
                     } else {
                         //if empty comment block, remove it.
-                        if(args.options().contains("checkEmpty") && isEmpty(block.comment())){
+                        if(config.isCheckEmpty() && block.isBlank()){
+                            clean = false;
                             validationError(block, "Empty comment block in", pfile.getPath());
                         }
 
                     }
                 }
+                if (clean && cache != null && pfile.getStamp() != null) {
+                    cache.markClean(new File(pfile.getPath()), pfile.getStamp());
+                }
                 return true;
             }
-
-            private boolean isEmpty(String content) {
-                return content.trim().equals("");
-            }
         };
     }
 
@@ -149,9 +213,11 @@ public class ActionFactory {
     // afterFirstBlock is true if the copyright needs to start after the first block in the
     // file.
 
-    public Scanner.Action getModifyCopyrightAction(final PlainBlock copyrightBlock, final PlainBlock copyrightTemplateBlock, final LicenseTool.Arguments args) {
+    public Scanner.Action getModifyCopyrightAction(final RunConfig config) {
+        final PlainBlock copyrightBlock = config.getCopyrightText();
+        final CompiledCopyrightTemplate copyrightTemplate = config.getCopyrightTemplate();
         trace("makeCopyrightBlockAction: copyrightText = " + copyrightBlock);
-
+        final KeywordMatcher keywords = getKeywords(config);
 
         return new Scanner.Action() {
             public String toString() {
@@ -160,37 +226,37 @@ public class ActionFactory {
 
             public boolean evaluate(ParsedFile pfile) {
                 //tag blocks
-                boolean hadAnOldSunCopyright = tagBlocks(pfile, args);
+                boolean hadAnOldSunCopyright = tagBlocks(pfile, keywords);
                 trace("Updating copyright/license header on file " + pfile.getPath());
                 int countSunCopyright = 0;
                 for (CommentBlock block : pfile.getComments()) {
-                    if (block.hasTags(OWN_COPYRIGHT_TAG, COPYRIGHT_BLOCK_TAG)) {
+                    if (block.hasTags(OWN_COPYRIGHT_BLOCK)) {
                         countSunCopyright++;
                         if (countSunCopyright > 1) {
                             trace("Remove: More than one Sun/Oracle Copyright Block " + pfile.getPath());
                             pfile.remove(block);
                             continue;
                         }
-                        if (block.hasTag(CommentBlock.TOP_COMMENT_BLOCK)) {
+                        if (block.hasTags(TOP_COMMENT_BLOCK)) {
                             //if (!(ToolUtil.areCommentsSimilar(copyrightBlock.contents(), block.comment()))) {
-                            if (!(ToolUtil.doesCopyrightMatch(copyrightTemplateBlock.contents(), block.comment()))) {
+                            if (!(matches(copyrightTemplate, block))) {
                                 // It should entirely match copyrightText
                                 trace("Replace: First block has incorrect copyright text " + pfile.getPath());
                                 pfile.remove(block);
-                                pfile.insertCommentBlock(fixCopyright(copyrightBlock.contents(), block.getCopyright(), args, getLastModifiedDate(args, pfile)));
+                                pfile.insertCommentBlock(fixCopyright(copyrightBlock.contents(), block.getCopyright(), config, getLastModifiedDate(config, pfile)));
                             }
                         } else {
                             trace("Move: Sun/Oracle Copyright Block is not the first comment block" + pfile.getPath());
                             pfile.remove(block);
-                            if (!(ToolUtil.doesCopyrightMatch(copyrightTemplateBlock.contents(), block.comment()))) {
-                                pfile.insertCommentBlock(fixCopyright(copyrightBlock.contents(), block.getCopyright(), args, getLastModifiedDate(args, pfile)));
+                            if (!(matches(copyrightTemplate, block))) {
+                                pfile.insertCommentBlock(fixCopyright(copyrightBlock.contents(), block.getCopyright(), config, getLastModifiedDate(config, pfile)));
                             } else {
                                 pfile.insertCommentBlock(block.comment());
                             }
                         }
                     } else {
                         //if empty comment block, remove it.
-                        if (args.options().contains("checkEmpty") && isEmpty(block.comment())) {
+                        if (config.isCheckEmpty() && block.isBlank()) {
                             trace("Remove: empty comment block in" + pfile.getPath());
                             pfile.remove(block);
                         }
@@ -199,43 +265,81 @@ public class ActionFactory {
                 }
                 if (!hadAnOldSunCopyright) {
                     trace("Insert: No Sun/Oracle Copyright header in " + pfile.getPath());
-                    pfile.insertCommentBlock(fixCopyright(copyrightBlock.contents(),null, args, getLastModifiedDate(args, pfile)));
+                    pfile.insertCommentBlock(fixCopyright(copyrightBlock.contents(),null, config, getLastModifiedDate(config, pfile)));
                 }
 
+                final long start = Metrics.start();
                 try {
                     pfile.write();
                 } catch (IOException exc) {
                     trace("Exception while processing file " + pfile.getPath() + ": " + exc);
                     exc.printStackTrace();
                     return false;
+                } finally {
+                    Metrics.end(Metrics.Phase.WRITE, start);
                 }
                 return true;
             }
+        };
+    }
 
-            private boolean isEmpty(String content) {
-                return content.trim().equals("");
+    /**
+     * Returns an action that reports, for every copyright comment of a file,
+     * which license of the catalog it is.  Files are not modified.
+     */
+    public Scanner.Action getClassifyLicenseAction(final LicenseCatalog catalog) {
+        return new Scanner.Action() {
+            public String toString() {
+                return "ClassifyLicenseAction[licenses=" + catalog.getLicenses() + "]";
+            }
+
+            public boolean evaluate(ParsedFile pfile) {
+                for (CommentBlock block : pfile.getComments()) {
+                    long start = Metrics.start();
+                    if (headerCache != null) {
+                        headerCache.parseCopyright(block, pfile);
+                    } else {
+                        CopyrightParser.parseCopyright(block, pfile);
+                    }
+                    Metrics.end(Metrics.Phase.COPYRIGHT_PARSE, start);
+                    if (!block.hasTag(COPYRIGHT_BLOCK_TAG)) {
+                        continue;
+                    }
+                    start = Metrics.start();
+                    final LicenseCatalog.Match match = catalog.classify(block.comment());
+                    Metrics.end(Metrics.Phase.CLASSIFY, start);
+                    if (match == null) {
+                        LOGGER.warning("Unknown license for " + pfile.getPath());
+                        traceBlock(block);
+                    } else {
+                        LOGGER.info("License " + match + " for " + pfile.getPath());
+                    }
+                }
+                return true;
             }
         };
     }
 
-    private String getLastModifiedDate(LicenseTool.Arguments args, ParsedFile pfile) {
+    private String getLastModifiedDate(RunConfig config, ParsedFile pfile) {
         String lastModified = null;
-        if (args != null && args.uselastmodified() && pfile.getVCS() != null) {
-            lastModified = pfile.getVCS().getLastModifiedYear(pfile.getPath());
+        if (config != null && config.isUseLastModified()) {
+            final long start = Metrics.start();
+            lastModified = pfile.getLastModifiedYear();
+            Metrics.end(Metrics.Phase.VCS, start);
         }
         return lastModified;
     }
 
     //TODO Use file last changed date
-    private String fixCopyright(String cr_text, CommentBlock.Copyright copyright, LicenseTool.Arguments args, String lastModified) {
+    private String fixCopyright(String cr_text, CommentBlock.Copyright copyright, RunConfig config, String lastModified) {
         StringBuilder sb = new StringBuilder();
 
         String startYear = null;
         String endYear = null;
         //Use default start year, end year if there is no existing copyright
         if(copyright == null) {
-            startYear = args.startyear();
-            endYear=args.endyear();
+            startYear = config.getStartYear();
+            endYear=config.getEndYear();
         }
         
         if(startYear != null && startYear.equals("")) {
@@ -256,7 +360,9 @@ public class ActionFactory {
         if(startYear == null || startYear.equals("")) {
             //TODO throw validation exception
         }
-        for(String line: ToolUtil.splitToLines(cr_text)) {
+        LineIterator lines = new LineIterator(cr_text);
+        while (lines.next()) {
+            String line = lines.lineAsString();
             if(line.contains("YYYY ")) {
                 String years = null;
                 if(endYear != null && !endYear.equals("") && endYear.compareTo(startYear) > 0) {
@@ -279,13 +385,13 @@ public class ActionFactory {
         return sb.toString();
     }
 
-    //Just delete the original file and rewrite it to test if parsing and writing back works correctly.
+    //Just rewrite the original file to test if parsing and writing back works correctly.
 
     public Scanner.Action getReWriteCopyrightAction() {
         return new Scanner.Action() {
             public boolean evaluate(ParsedFile pfile) {
                 try {
-                    pfile.write();
+                    pfile.rewrite();
                 } catch (IOException exc) {
                     trace("Exception while processing file " + pfile.getPath() + ": " + exc);
                     exc.printStackTrace();
@@ -296,37 +402,82 @@ public class ActionFactory {
         };
     }
 
-    private boolean tagBlocks(ParsedFile pfile, LicenseTool.Arguments args) {
-        boolean hadAnOldSunCopyright = false;
-        String LICENSOR_KEYWORD = "licensor:";
-        List<String> own_licensors = new ArrayList<String>();
-        for(String option:args.options()) {
-            if(option.startsWith(LICENSOR_KEYWORD)) {
-                own_licensors.add(option.substring(LICENSOR_KEYWORD.length()));
+    private boolean matches(CompiledCopyrightTemplate copyrightTemplate, CommentBlock block) {
+        final long start = Metrics.start();
+        try {
+            if (headerCache != null) {
+                return headerCache.matches(block);
             }
+            return copyrightTemplate.matches(block.comment());
+        } finally {
+            Metrics.end(Metrics.Phase.TEMPLATE_MATCH, start);
         }
+    }
+
+    // The template with the years of the copyright line of block in place
+    // of its placeholder, so that only the text around the years counts
+    // against the edit distance.  The template itself if block has no
+    // copyright line with years.
+    private static String expectedText(PlainBlock copyrightBlock, CommentBlock block) {
+        final Matcher years = COPYRIGHT_YEARS.matcher(block.comment());
+        if (!years.find()) {
+            return copyrightBlock.contents();
+        }
+        return YEAR_PLACEHOLDER.matcher(copyrightBlock.contents())
+                .replaceFirst(Matcher.quoteReplacement(years.group(1)));
+    }
+
+    private boolean isSimilar(String expected, CommentBlock block, int maxDistance) {
+        final long start = Metrics.start();
+        try {
+            if (headerCache != null) {
+                return headerCache.isSimilar(block, expected, maxDistance);
+            }
+            return ToolUtil.areCommentsSimilar(expected, block.comment(), maxDistance);
+        } finally {
+            Metrics.end(Metrics.Phase.TEMPLATE_MATCH, start);
+        }
+    }
+
+    // Compile the CDDL marker, Sun, Oracle and the licensor:<name> options
+    // into one matcher, once per action.
+    private static KeywordMatcher getKeywords(RunConfig config) {
+        List<String> keywords = new ArrayList<String>();
+        keywords.add("CDDL");
+        keywords.add("Sun");
+        keywords.add("Oracle");
+        keywords.addAll(config.getLicensors());
+        return new KeywordMatcher(keywords);
+    }
+
+    // Tag the copyright blocks of pfile, and return true if one of them has
+    // an own licensor.  The contents of each copyright block are scanned
+    // once for all keywords; the licensor, which is part of the contents,
+    // only needs to be looked at if some licensor keyword occurs in them.
+    private boolean tagBlocks(ParsedFile pfile, KeywordMatcher keywords) {
+        boolean hadAnOldSunCopyright = false;
         // Tag blocks
         for (CommentBlock cb : pfile.getComments()) {
-            CopyrightParser.parseCopyright(cb, pfile);
+            final long start = Metrics.start();
+            if (headerCache != null) {
+                headerCache.parseCopyright(cb, pfile);
+            } else {
+                CopyrightParser.parseCopyright(cb, pfile);
+            }
+            Metrics.end(Metrics.Phase.COPYRIGHT_PARSE, start);
             if(cb.hasTag(COPYRIGHT_BLOCK_TAG)) {
-                String cddl = cb.find("CDDL");
-                if (cddl != null) {
+                BitSet found = keywords.findAll(cb.contents());
+                if (found.get(CDDL_KEYWORD)) {
                     cb.addTag("CDDL_TAG");
                 }
                 CommentBlock.Copyright cr = cb.getCopyright();
-                if (cr != null && cr.getLicensor() != null) {
-                    if (cr.getLicensor().contains("Sun") ||cr.getLicensor().contains("Oracle") ) {
+                if (cr != null && cr.getLicensor() != null
+                        && found.nextSetBit(FIRST_LICENSOR_KEYWORD) >= 0) {
+                    found = keywords.findAll(cr.getLicensor());
+                    if (found.nextSetBit(FIRST_LICENSOR_KEYWORD) >= 0) {
                         cb.addTag(OWN_COPYRIGHT_TAG);
                         hadAnOldSunCopyright = true;
                     }
-
-                    for(String licensor: own_licensors) {
-                        if(cr.getLicensor().contains(licensor)) {
-                            cb.addTag(OWN_COPYRIGHT_TAG);
-                            hadAnOldSunCopyright = true;    
-                        }
-                    }
-
                 }
             }
         }
@@ -0,0 +1,272 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.jvnet.licensetool;
+
+import org.jvnet.licensetool.file.FileRecognizer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.StreamHandler;
+
+/**
+ * Validates files for clients on a loopback port, so that a pre-commit
+ * hook does not pay for starting a JVM, parsing the arguments and
+ * compiling the template on every commit.  The scanner, recognizer, action
+ * and caches of the daemon are made once and used for every request.
+ * <p/>
+ * The protocol is line based, in UTF-8.  A client sends the absolute path
+ * of each file or directory to validate on its own line, followed by an
+ * empty line.  The daemon validates them, sends back every log record of
+ * the scan as formatted for the console, and ends with a line
+ * "EXIT <status>", where the status is 1 if there were warnings and 0
+ * otherwise.  Paths that are not under the roots the daemon was started
+ * with, or that are in a directory to skip, are not validated; each gives a
+ * warning instead.  Requests are served one at a time, so a client that
+ * does not finish sending its request within the request timeout is
+ * answered "EXIT 2" without any validation, and the next one is served.
+ */
+public class Daemon {
+    public static final int DEFAULT_PORT = 18780;
+    public static final int DEFAULT_REQUEST_TIMEOUT = 10000;
+
+    private static final Logger LOGGER = Logger.getLogger(Daemon.class.getName());
+    private static final String ENCODING = "UTF-8";
+    private static final String EXIT = "EXIT ";
+
+    private final Scanner scanner;
+    private final FileRecognizer recognizer;
+    private final Scanner.Action action;
+    private final ValidationCache cache;
+    private final Formatter formatter;
+    private volatile int requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+    private volatile ServerSocket server;
+    private volatile boolean stopped;
+
+    /**
+     * The cache may be null.  Log records of a request are sent to its
+     * client formatted by formatter.
+     */
+    public Daemon(Scanner scanner, FileRecognizer recognizer, Scanner.Action action,
+                  ValidationCache cache, Formatter formatter) {
+        this.scanner = scanner;
+        this.recognizer = recognizer;
+        this.action = action;
+        this.cache = cache;
+        this.formatter = formatter;
+    }
+
+    /**
+     * Set the milliseconds a client may take to send its request; 0 waits
+     * forever.
+     */
+    public void setRequestTimeout(int millis) {
+        this.requestTimeout = millis;
+    }
+
+    /**
+     * Serve requests on the loopback port until stop is called, the thread
+     * is interrupted or the socket fails.
+     */
+    public void serve(int port) throws IOException {
+        final ServerSocket server = new ServerSocket();
+        this.server = server;
+        try {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            LOGGER.info("Daemon listening on " + server.getLocalSocketAddress());
+            while (!stopped && !Thread.currentThread().isInterrupted()) {
+                final Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (IOException exc) {
+                    if (stopped)
+                        return;
+                    throw exc;
+                }
+                try {
+                    serve(socket);
+                } catch (IOException exc) {
+                    LOGGER.warning("Request failed: " + exc);
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Make serve return once the request being served, if any, is done.
+     */
+    public void stop() {
+        stopped = true;
+        final ServerSocket server = this.server;
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException exc) {
+                // serve is ending anyway
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        socket.setSoTimeout(requestTimeout);
+        final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), ENCODING));
+        final OutputStream out = socket.getOutputStream();
+        final List<File> files = new ArrayList<File>();
+        String line;
+        try {
+            while ((line = in.readLine()) != null && line.length() > 0) {
+                files.add(new File(line));
+            }
+        } catch (SocketTimeoutException exc) {
+            LOGGER.warning("Request not finished within " + requestTimeout + " ms; not validating it");
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(out, ENCODING));
+            writer.write("ERROR: The request was not finished within " + requestTimeout + " ms\n");
+            writer.write(EXIT + 2 + "\n");
+            writer.flush();
+            return;
+        }
+        final long start = System.nanoTime();
+        final RequestHandler handler = new RequestHandler(out, formatter);
+        final Logger domainLogger = Logger.getLogger("org.jvnet.licensetool");
+        domainLogger.addHandler(handler);
+        try {
+            final List<File> accepted = new ArrayList<File>(files.size());
+            for (File file : files) {
+                if (scanner.accepts(file)) {
+                    accepted.add(file);
+                } else {
+                    LOGGER.warning("Not validating " + file + ": it is not under the roots or is in a directory to skip");
+                }
+            }
+            scanner.scan(accepted, recognizer, action);
+            if (cache != null) {
+                cache.save();
+            }
+        } finally {
+            domainLogger.removeHandler(handler);
+            handler.flush();
+        }
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, ENCODING));
+        writer.write(EXIT + (handler.warnings > 0 ? 1 : 0) + "\n");
+        writer.flush();
+        LOGGER.fine("Validated " + files.size() + " paths in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    // Sends the log records of one request to its client, and counts the warnings
+    private static class RequestHandler extends StreamHandler {
+        int warnings;
+
+        RequestHandler(OutputStream out, Formatter formatter) throws IOException {
+            super(out, formatter);
+            setEncoding(ENCODING);
+            setLevel(Level.ALL);
+        }
+
+        public synchronized void publish(LogRecord record) {
+            if (!isLoggable(record)) {
+                return;
+            }
+            if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                warnings++;
+            }
+            super.publish(record);
+        }
+
+        public synchronized void close() {
+            // the socket is closed by the daemon, after the final line
+            flush();
+        }
+    }
+
+    /**
+     * Send files to the daemon on port, copy its answer to out, and return
+     * the exit status it gave, or 2 if there was no answer.  Relative paths
+     * are resolved against the current directory of the client.
+     */
+    public static int connect(int port, List<String> files, PrintStream out) {
+        try {
+            final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            try {
+                final Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), ENCODING));
+                for (String file : files) {
+                    writer.write(new File(file).toPath().toAbsolutePath().normalize().toString());
+                    writer.write('\n');
+                }
+                writer.write('\n');
+                writer.flush();
+                final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), ENCODING));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith(EXIT)) {
+                        return Integer.parseInt(line.substring(EXIT.length()));
+                    }
+                    out.println(line);
+                }
+            } finally {
+                socket.close();
+            }
+            out.println("ERROR: The daemon on port " + port + " did not finish the request");
+        } catch (IOException exc) {
+            out.println("ERROR: Could not reach the daemon on port " + port + ": " + exc);
+        }
+        return 2;
+    }
+}
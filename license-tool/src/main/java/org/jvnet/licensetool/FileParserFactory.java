@@ -42,12 +42,13 @@ package org.jvnet.licensetool;
 
 import org.jvnet.licensetool.file.*;
 import org.jvnet.licensetool.generic.Pair;
-import org.jvnet.licensetool.util.ToolUtil;
+import org.jvnet.licensetool.generic.UnaryFunction;
+import org.jvnet.licensetool.util.LineIterator;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.logging.Logger;
 
 /**
@@ -61,10 +62,11 @@ public class FileParserFactory {
         }
 
         @Override
-        public ParsedFile parseFile(FileWrapper file) throws IOException {
-            return new LineCommentParsedFile(file) {
+        protected ParsedFile createParsedFile(FileWrapper file, boolean headerOnly) throws IOException {
+            return new LineCommentParsedFile(file, headerOnly) {
                 @Override
                 public void insertCommentBlock(String commentText) {
+                    markDirty();
                     CommentBlock cb = createCommentBlock(commentText);
                     cb.addTag(CommentBlock.TOP_COMMENT_BLOCK);
                     Block fBlock = fileBlocks.get(0);
@@ -112,56 +114,77 @@ public class FileParserFactory {
 
         @Override
         protected List<Block> parseBlocks(FileWrapper fw) throws IOException {
+            fw.open(FileWrapper.OpenMode.READ);
+            try {
+                return splitBlocks(fw.readAsString(), false).first();
+            } finally {
+                fw.close();
+            }
+        }
+
+        @Override
+        protected List<Block> parseHeaderBlocks(FileWrapper fw) throws IOException {
+            return FileParser.parseHeaderBlocks(fw, new UnaryFunction<String, Pair<List<Block>, Integer>>() {
+                public Pair<List<Block>, Integer> evaluate(String contents) {
+                    return splitBlocks(contents, true);
+                }
+            });
+        }
+
+        // Same as LineCommentFile.splitBlocks, except that a #! line becomes a block of its own.
+        private Pair<List<Block>, Integer> splitBlocks(String contents, boolean stopAtCode) {
             boolean inComment = false;
+            boolean sawComment = false;
+            int blockStart = 0;
             final List<Block> result = new ArrayList<Block>();
             StringBuilder sb = new StringBuilder();
-            fw.open(FileWrapper.OpenMode.READ);
-            try {
-                List<String> fileAsLines = ToolUtil.splitToLines(fw.readAsString());
-                int count = 0;
-                for (String line : fileAsLines) {
-                    if (count == 0) {
-                        if (line.startsWith("#!")) {
-                            result.add(new LineCommentFile.LineCommentBlock(prefix, line, new HashSet<String>()));
-                            count++;
-                            continue;
-                        }
+            final LineIterator lines = new LineIterator(contents);
+            int count = 0;
+            while (lines.next()) {
+                if (count == 0) {
+                    if (lines.startsWith("#!")) {
+                        result.add(new LineCommentFile.LineCommentBlock(prefix, lines.lineAsString(), Collections.<String>emptySet()));
+                        count++;
+                        continue;
                     }
-                    if (inComment) {
-                        if (line.startsWith(prefix)) {
-                            //previous line is also comment, so append to block
-                            sb.append(line);
-                        } else {
-                            result.add(new LineCommentFile.LineCommentBlock(prefix, sb.toString(), new HashSet<String>()));
-                            sb = new StringBuilder();
-                            inComment = false;
-                            sb.append(line);
-                        }
+                }
+                if (inComment) {
+                    if (lines.startsWith(prefix)) {
+                        //previous line is also comment, so append to block
+                        sb.append(contents, lines.start(), lines.end());
                     } else {
-                        if (line.startsWith(prefix)) {
-                            if (sb.length() != 0)
-                                result.add(new PlainBlock(sb.toString()));
-                            inComment = true;
-                            sb = new StringBuilder();
-                            sb.append(line);
+                        result.add(new LineCommentFile.LineCommentBlock(prefix, sb.toString(), Collections.<String>emptySet()));
+                        sawComment = true;
+                        sb = new StringBuilder();
+                        inComment = false;
+                        blockStart = lines.start();
+                        sb.append(contents, lines.start(), lines.end());
+                    }
+                } else {
+                    if (lines.startsWith(prefix)) {
+                        if (sb.length() != 0)
+                            result.add(new PlainBlock(sb.toString()));
+                        inComment = true;
+                        sb = new StringBuilder();
+                        sb.append(contents, lines.start(), lines.end());
 
-                        } else {
-                            //previous line is also not a comment
-                            sb.append(line);
-                        }
+                    } else {
+                        //previous line is also not a comment
+                        sb.append(contents, lines.start(), lines.end());
                     }
                 }
-                //add the last block
-                if (sb.length() != 0) {
-                    if (inComment)
-                        result.add(new LineCommentFile.LineCommentBlock(prefix, sb.toString(), new HashSet<String>()));
-                    else
-                        result.add(new PlainBlock(sb.toString()));
+                if (stopAtCode && sawComment && !inComment && !lines.isBlank()) {
+                    return new Pair<List<Block>, Integer>(result, blockStart);
                 }
-                return result;
-            } finally {
-                fw.close();
             }
+            //add the last block
+            if (sb.length() != 0) {
+                if (inComment)
+                    result.add(new LineCommentFile.LineCommentBlock(prefix, sb.toString(), Collections.<String>emptySet()));
+                else
+                    result.add(new PlainBlock(sb.toString()));
+            }
+            return new Pair<List<Block>, Integer>(result, -1);
         }
 
     }
@@ -182,22 +205,22 @@ public class FileParserFactory {
         final String JAVA_COMMENT_END = "*/";
         return new MultiLineCommentFile.MultiLineCommentFileParser(JAVA_COMMENT_START, JAVA_COMMENT_END, JAVA_COMMENT_PREFIX,"") {
             @Override
-            public ParsedFile parseFile(final FileWrapper file) throws IOException {
-                return new BlockCommentParsedFile(file) {
+            protected ParsedFile createParsedFile(final FileWrapper file, boolean headerOnly) throws IOException {
+                return new BlockCommentParsedFile(file, headerOnly) {
 
                     @Override //Hack to put " " before end prefix "*/"
                     protected CommentBlock createCommentBlock(String commentText) {
 
                         final List<String> commentTextBlock = new ArrayList<String>();
-                        List<String> dataAsLines = ToolUtil.splitToLines(commentText);
-                        for (String str : dataAsLines) {
-                            commentTextBlock.add(prefix + ToolUtil.covertLineBreak(str, line_separator));
+                        LineIterator lines = new LineIterator(commentText);
+                        while (lines.next()) {
+                            commentTextBlock.add(prefix + commentText.substring(lines.start(), lines.contentEnd()) + line_separator);
                         }
                         commentTextBlock.add(0, start + line_separator);
                         //Hack to put " " before end prefix "*/"
                         commentTextBlock.add(commentTextBlock.size(), " "+end);
 
-                        return new MultiLineCommentFile.MultiLineCommentBlock(start, end, prefix, commentTextBlock, new HashSet<String>());
+                        return new MultiLineCommentFile.MultiLineCommentBlock(start, end, prefix, commentTextBlock, Collections.<String>emptySet());
                     }
                 };
             }
@@ -222,10 +245,11 @@ public class FileParserFactory {
                 XML_COMMENT_START, XML_COMMENT_END, XML_COMMENT_PREFIX, preamblePattern) {
 
             @Override
-            public ParsedFile parseFile(final FileWrapper file) throws IOException {
-                return new BlockCommentParsedFile(file) {
+            protected ParsedFile createParsedFile(final FileWrapper file, boolean headerOnly) throws IOException {
+                return new BlockCommentParsedFile(file, headerOnly) {
                     @Override
                     public void insertCommentBlock(String commentText) {
+                        markDirty();
                         CommentBlock cb = createCommentBlock(commentText);
                         cb.addTag(CommentBlock.TOP_COMMENT_BLOCK);
                         Block firstBlock = fileBlocks.get(0);
@@ -234,8 +258,9 @@ public class FileParserFactory {
                             adjustBlockAtIndex(1);
                         } else {
                             PlainBlock plainBlock = (PlainBlock) firstBlock;
-                            List<String> lines = ToolUtil.splitToLines(plainBlock.contents());
-                            String firstLine = lines.get(0);
+                            LineIterator lines = new LineIterator(plainBlock.contents());
+                            lines.next();
+                            String firstLine = lines.lineAsString();
                             if (isPreamble(firstLine.trim())) {
                                 Pair<Block, Block> splitBlocks = plainBlock.splitFirst();
                                 Block xmlDeclaration = splitBlocks.first();
@@ -259,15 +284,14 @@ public class FileParserFactory {
                         if(b instanceof CommentBlock)
                             b.addTag(CommentBlock.TOP_COMMENT_BLOCK);
                         else if(b instanceof PlainBlock) {
-                            List<String> content = ToolUtil.splitToLines(((PlainBlock)b).contents());
-                            String firstLine =content.get(0);
+                            LineIterator content = new LineIterator(((PlainBlock)b).contents());
+                            content.next();
+                            String firstLine = content.lineAsString();
                             if(isPreamble(firstLine.trim())) {
-                                if(content.size() > 1) {
-                                    for(int i=1; i<content.size();i++) {
-                                        // after first line, there is non-empty content
-                                        if(!(content.get(i).trim().equals("")))
-                                            return;
-                                    }
+                                while (content.next()) {
+                                    // after first line, there is non-empty content
+                                    if(!content.isBlank())
+                                        return;
                                 }
                                 b = fileBlocks.get(1);
                                 if(b instanceof CommentBlock) {
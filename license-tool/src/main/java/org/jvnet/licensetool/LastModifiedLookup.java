@@ -0,0 +1,126 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import org.jvnet.licensetool.file.VCS;
+import org.jvnet.licensetool.file.VCSIndex;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Looks up the last modified years of files from a VCS on a fixed number of
+ * threads, so that the external commands run while other files are parsed.
+ * Scanner keeps the lookups for the next few files of a directory running
+ * ahead of the file it processes, and hands each file its pending result
+ * when the file is parsed.
+ */
+public class LastModifiedLookup {
+    private final VCS vcs;
+    private final VCSIndex index;
+    private final ExecutorService executor;
+    private final int readAhead;
+    private final ConcurrentMap<File, Future<String>> pending = new ConcurrentHashMap<File, Future<String>>();
+
+    /**
+     * index may be null.
+     */
+    public LastModifiedLookup(final VCS vcs, final VCSIndex index, final int threads) {
+        this.vcs = vcs;
+        this.index = index;
+        this.readAhead = 4 * threads;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "VCS lookup");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Start looking up the last modified year of file, unless that has been
+     * started already.
+     */
+    public void prefetch(final File file) {
+        if (pending.containsKey(file))
+            return;
+        final FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+            public String call() {
+                return vcs.getLastModifiedYear(file.getPath(), index);
+            }
+        });
+        if (pending.putIfAbsent(file, task) == null) {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Number of directory entries ahead of the one being processed whose
+     * lookups should be running, enough to keep the threads busy.
+     */
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Return the lookup started for file by prefetch, or null if there is none.
+     * Once taken, the lookup is no longer held here.
+     */
+    public Future<String> take(final File file) {
+        return pending.remove(file);
+    }
+
+    /**
+     * Stop all lookups that have not finished.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        pending.clear();
+    }
+}
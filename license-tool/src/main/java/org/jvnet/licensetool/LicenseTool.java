@@ -44,13 +44,19 @@ import org.jvnet.licensetool.argparser.ArgParser;
 import org.jvnet.licensetool.argparser.DefaultValue;
 import org.jvnet.licensetool.argparser.Help;
 import org.jvnet.licensetool.file.PlainBlock;
+import org.jvnet.licensetool.file.FileRecognizer;
 import org.jvnet.licensetool.file.FileWrapper;
-import org.jvnet.licensetool.util.ToolUtil;
+import org.jvnet.licensetool.util.CompiledCopyrightTemplate;
+import org.jvnet.licensetool.util.HeaderCache;
+import org.jvnet.licensetool.util.LicenseCatalog;
+import org.jvnet.licensetool.util.Metrics;
+import org.jvnet.licensetool.util.LineIterator;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -94,11 +100,11 @@ public class LicenseTool {
         @Help("Default copyright end year, if not otherwise specified")
         String endyear();
 
-        @Help("Extra options")
+        @Help("Extra options: checkEmpty reports empty comment blocks, headerOnly validates only the leading comments of each file, fsync forces modified files to disk before they replace the originals, licensor:<name> adds an own licensor, fuzzy or fuzzy:<n> accepts headers within 10 (or n) edits of the template during validation")
         @DefaultValue("")
         List<String> options();
 
-        @Help("Version Control System")
+        @Help("Version Control System: CVS, SVN, HG or GIT; found from the first root if empty")
         @DefaultValue("")
         String vcs();
 
@@ -106,11 +112,45 @@ public class LicenseTool {
         @Help("Set to true to use last modified date of the file from VCS history if it is later than the end year")
         boolean uselastmodified();
 
+        @DefaultValue("0")
+        @Help("Number of threads that look up last modified years from the VCS ahead of the files being processed; if 0, each year is looked up when it is needed")
+        int vcsthreads();
+
+        @DefaultValue("1")
+        @Help("Number of threads used to process files; if greater than 1, files are recognized, parsed and validated in parallel; files are always modified by a single thread")
+        int threads();
+
+        @DefaultValue("1048576")
+        @Help("Files of at least this many bytes are decoded straight from the file channel, through a small direct buffer, into a single character buffer instead of being read through a Reader")
+        long directthreshold();
+
+        @DefaultValue("")
+        @Help("File in which validation results are kept between runs, so that unchanged files are not validated again; no cache if empty")
+        String cache();
+
+        @DefaultValue("")
+        @Help("JSON file to which counts, timings and byte totals of the run are written; they are also logged as a table.  No metrics are collected if empty")
+        String metrics();
+
+        @DefaultValue("")
+        @Help("Directory of license templates, one file per license; if set, the copyright comments of every file are reported as one of these licenses instead of being validated or updated")
+        String catalog();
+
+        @DefaultValue("false")
+        @Help("Set to true to keep running and validate the files sent by clients on the loopback port given by -port, reusing the template, caches and recognizers between requests.  A client is started with -connect <port> <files...> as the only arguments.  Cannot be combined with -metrics")
+        boolean daemon();
+
+        @DefaultValue("18780")
+        @Help("Loopback port on which the daemon listens")
+        int port();
 
     }
 
     private static boolean validate;
     private static boolean verbose;
+    // The handler process() added to the org.jvnet.licensetool logger, so that
+    // calling it again replaces the handler instead of adding another one
+    private static Handler consoleHandler;
 
 
     private static void trace(String msg) {
@@ -146,11 +186,15 @@ public class LicenseTool {
     private static final String START_YEAR = "StartYear";
     private static final Logger LOGGER = Logger.getLogger(LicenseTool.class.getName());
 
-    private static PlainBlock makeCopyrightPatternBlock(PlainBlock copyrightTextBlock) {
+    // The regular expression form of the copyright template.  Validation
+    // uses CopyrightTemplateMatcher, which must agree with this pattern.
+    static PlainBlock makeCopyrightPatternBlock(PlainBlock copyrightTextBlock) {
         StringBuilder sb = new StringBuilder();
         String copyrightText = Pattern.quote(copyrightTextBlock.contents());
 
-        for(String line: ToolUtil.splitToLines(copyrightText) ) {
+        LineIterator lines = new LineIterator(copyrightText);
+        while (lines.next()) {
+            String line = lines.lineAsString();
             if(line.contains("YYYY ")) {
                 line = line.replace("YYYY ", "\\E[0-9]{4}(-[0-9]{4})? \\Q");
             } else if(line.contains("YYYY, ")) {
@@ -209,7 +253,13 @@ public class LicenseTool {
             }
 
         };
-        java.util.logging.StreamHandler sh = new StreamHandler(System.out,formatter);
+        // Flushed for every record, so that the log of a daemon is not held back
+        java.util.logging.StreamHandler sh = new StreamHandler(System.out,formatter) {
+            public synchronized void publish(LogRecord record) {
+                super.publish(record);
+                flush();
+            }
+        };
         Logger domainLogger = Logger.getLogger("org.jvnet.licensetool");
         domainLogger.setUseParentHandlers(false);
         
@@ -217,6 +267,12 @@ public class LicenseTool {
             domainLogger.setLevel(Level.FINE);
             sh.setLevel(Level.FINE);
         }
+        synchronized (LicenseTool.class) {
+            if (consoleHandler != null) {
+                domainLogger.removeHandler(consoleHandler);
+            }
+            consoleHandler = sh;
+        }
         domainLogger.addHandler(sh);
         trace("Main: args:\n" + args);
 //        Versioned.VCS vcs = null;
@@ -227,35 +283,90 @@ public class LicenseTool {
 //        }
 
         try {
-            // Create the blocks needed for different forms of the
-            // copyright comment template                                                                   n ddr
-            final PlainBlock copyrightText = new PlainBlock(args.copyright());
+            // Take the settings, and read and compile the copyright template,
+            // once for the whole run
+            final RunConfig config = new RunConfig(args);
+            if (config.isDaemon() && (!validate || !config.getCatalog().equals(""))) {
+                throw new IllegalArgumentException("The daemon only validates copyright headers");
+            }
+            if (config.isDaemon() && !config.getMetrics().equals("")) {
+                throw new IllegalArgumentException("The daemon does not write metrics");
+            }
+            FileWrapper.setDirectThreshold(config.getDirectThreshold());
+            FileWrapper.setSyncOnReplace(config.isFsync());
+            final Metrics metrics = config.getMetrics().equals("") ? null : Metrics.enable();
 
-            //TODO remove 123
-            //PlainBlock copyrightTemplate = makeCopyrightBlock(startYear, copyrightText);
-            PlainBlock copyrightTemplate = makeCopyrightPatternBlock(copyrightText);
+            Scanner scanner = new Scanner(config, config.getRoots());
+            for (String str : config.getSkipdirs())
+                scanner.addDirectoryToSkip(str);
 
+            if (!config.getCatalog().equals("")) {
+                LicenseCatalog catalog = LicenseCatalog.load(new File(config.getCatalog()));
+                trace("License catalog: " + catalog.getLicenses());
+                scanner.scan(new RecognizerFactory().getDefaultRecognizer(),
+                        new ActionFactory().getClassifyLicenseAction(catalog));
+                LOGGER.info(catalog.summary());
+                if (metrics != null) {
+                    LOGGER.info("Run metrics:\n" + metrics.table());
+                    metrics.writeJson(new File(config.getMetrics()));
+                }
+                return;
+            }
 
-            Scanner scanner = new Scanner(args, args.roots());
-            for (String str : args.skipdirs())
-                scanner.addDirectoryToSkip(str);
+            //TODO remove 123
+            //PlainBlock copyrightTemplate = makeCopyrightBlock(startYear, copyrightText);
+            CompiledCopyrightTemplate copyrightTemplate = config.getCopyrightTemplate();
+
+            ValidationCache cache = null;
+            if (validate && !config.getCache().equals("")) {
+                cache = new ValidationCache(new File(config.getCache()),
+                        ValidationCache.configDigest(config));
+                cache.load();
+                scanner.setValidationCache(cache);
+            }
 
+            HeaderCache headerCache = new HeaderCache(copyrightTemplate);
             Scanner.Action action;
             if(validate) {
-                action = new ActionFactory().getValidateCopyrightAction(copyrightText, copyrightTemplate, args);
+                action = new ActionFactory(headerCache).getValidateCopyrightAction(config, cache);
             } else {
-                action = new ActionFactory().getModifyCopyrightAction(copyrightText, copyrightTemplate, args);
+                action = new ActionFactory(headerCache).getModifyCopyrightAction(config);
                 //action = new ActionFactory(verbose).getReWriteCopyrightAction();
             }
+            FileRecognizer recognizer = new RecognizerFactory().getDefaultRecognizer();
+            if (config.isDaemon()) {
+                // Validate the files of each request with the same scanner,
+                // action and caches until the process is stopped
+                new Daemon(scanner, recognizer, action, cache, formatter).serve(config.getPort());
+                return;
+            }
             // Finally, we process all files
-            scanner.scan(new RecognizerFactory().getDefaultRecognizer(), action);
+            scanner.scan(recognizer, action);
+            if (cache != null) {
+                cache.save();
+            }
+            if (metrics != null) {
+                LOGGER.info(headerCache.summary());
+                LOGGER.info("Run metrics:\n" + metrics.table());
+                metrics.writeJson(new File(config.getMetrics()));
+            } else {
+                LOGGER.fine(headerCache.summary());
+            }
         } catch (Exception ex) {
             LOGGER.warning("Exception while processing: " + ex);
             ex.printStackTrace();
+        } finally {
+            Metrics.disable();
         }
     }
 
     public static void main(String[] strs) {
+        // A client of the daemon starts without parsing arguments or
+        // setting up logging: -connect <port> <files...>
+        if (strs.length >= 2 && strs[0].equals("-connect")) {
+            System.exit(Daemon.connect(Integer.parseInt(strs[1]),
+                    Arrays.asList(strs).subList(2, strs.length), System.out));
+        }
         ArgParser<Arguments> ap = new ArgParser(Arguments.class);
         Arguments args = ap.parse(strs);
         LicenseTool.process(args);        
@@ -65,6 +65,12 @@ public class LicenseToolTask extends MatchingTask {
     boolean dryrun = false;
     boolean uselastmodified = false;
     String vcs = "";
+    int threads = 1;
+    long directthreshold = FileWrapper.DEFAULT_DIRECT_THRESHOLD;
+    String cache = "";
+    int vcsthreads = 0;
+    String metrics = "";
+    String catalog = "";
     private File srcDir;
 
     public void setSrcDir(File srcDir) {
@@ -108,6 +114,30 @@ public class LicenseToolTask extends MatchingTask {
         }
 
 
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setDirectthreshold(long directthreshold) {
+        this.directthreshold = directthreshold;
+    }
+
+    public void setVcsthreads(int vcsthreads) {
+        this.vcsthreads = vcsthreads;
+    }
+
+    public void setCache(String cache) {
+        this.cache = cache;
+    }
+
+    public void setMetrics(String metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setCatalog(String catalog) {
+        this.catalog = catalog;
+    }
+
     public void setOptions(String options) {
         this.options = Arrays.asList(options.split(","));
     }
@@ -164,6 +194,38 @@ public class LicenseToolTask extends MatchingTask {
             public boolean uselastmodified() {
                 return false;
             }
+
+            public int threads() {
+                return threads;
+            }
+
+            public long directthreshold() {
+                return directthreshold;
+            }
+
+            public String cache() {
+                return cache;
+            }
+
+            public int vcsthreads() {
+                return vcsthreads;
+            }
+
+            public String metrics() {
+                return metrics;
+            }
+
+            public String catalog() {
+                return catalog;
+            }
+
+            public boolean daemon() {
+                return false;
+            }
+
+            public int port() {
+                return Daemon.DEFAULT_PORT;
+            }
         };
 
        LicenseTool.process(args);
@@ -42,12 +42,14 @@ package org.jvnet.licensetool;
 
 import org.jvnet.licensetool.file.*;
 import org.jvnet.licensetool.generic.Pair;
+import org.jvnet.licensetool.generic.UnaryFunction;
+import org.jvnet.licensetool.util.LineIterator;
 import org.jvnet.licensetool.util.ToolUtil;
 
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.logging.Logger;
 import java.io.IOException;
 
@@ -59,6 +61,15 @@ public class LineCommentFile {
         protected final List<Pair<String, String>> commentLines = new ArrayList<Pair<String, String>>();        
         final String prefix;
 
+        // Until the comment is split into lines, it is source[sourceStart, sourceEnd)
+        private CharSequence source;
+        private int sourceStart;
+        private int sourceEnd;
+
+        // contents() and comment(), once built; reset by replace
+        private String renderedContents;
+        private String renderedComment;
+
         public LineCommentBlock(String prefix, List<String> lineComment, Set<String> tags) {
             super(tags);
             this.prefix = prefix;
@@ -71,39 +82,79 @@ public class LineCommentFile {
             parse(lineComment);
         }
 
+        /**
+         * Create a block for the comment lines in source from sourceStart up
+         * to sourceEnd.  The comment is not copied or split into lines until
+         * its parts are needed, and it is written straight from source until
+         * it is replaced.
+         */
+        public LineCommentBlock(String prefix, CharSequence source, int sourceStart, int sourceEnd, Set<String> tags) {
+            super(tags);
+            this.prefix = prefix;
+            this.source = source;
+            this.sourceStart = sourceStart;
+            this.sourceEnd = sourceEnd;
+        }
+
         public static CommentBlock createCommentBlock(String prefix, final String commentText, String line_separator) {
             final List<String> commentTextBlock = new ArrayList<String>();
-            List<String> dataAslines = ToolUtil.splitToLines(commentText);
-            if (!dataAslines.get(0).trim().equals(""))
-                commentTextBlock.add(prefix + line_separator);
-            for (String str : dataAslines) {
-                commentTextBlock.add(prefix + ToolUtil.covertLineBreak(str, line_separator));
+            LineIterator lines = new LineIterator(commentText);
+            boolean lastIsBlank = true;
+            while (lines.next()) {
+                if (lines.start() == 0 && !lines.isBlank())
+                    commentTextBlock.add(prefix + line_separator);
+                commentTextBlock.add(prefix + commentText.substring(lines.start(), lines.contentEnd()) + line_separator);
+                lastIsBlank = lines.isBlank();
             }
-            if (!dataAslines.get(dataAslines.size() - 1).trim().equals(""))
+            if (!lastIsBlank)
                 commentTextBlock.add(prefix + line_separator);
-            return new LineCommentBlock(prefix, commentTextBlock, new HashSet<String>());
+            return new LineCommentBlock(prefix, commentTextBlock, Collections.<String>emptySet());
         }
 
 
         public Block replace(String content) {
+            source = null;
+            renderedContents = null;
+            renderedComment = null;
             commentLines.clear();
-            List<String> dataAslines = ToolUtil.splitToLines(content);
-            for (String str : dataAslines) {
-                commentLines.add(new Pair<String, String>(prefix, str));
+            LineIterator lines = new LineIterator(content);
+            while (lines.next()) {
+                commentLines.add(new Pair<String, String>(prefix, lines.lineAsString()));
             }
             return this;
         }
 
         public String contents() {
+            if (renderedContents != null) {
+                return renderedContents;
+            }
+            if (source != null) {
+                renderedContents = source.subSequence(sourceStart, sourceEnd).toString();
+                return renderedContents;
+            }
             StringBuilder sb = new StringBuilder();
             for(Pair<String,String> line: commentLines) {
                 sb.append(line.first());
                 sb.append(line.second());
             }
-            return sb.toString();
+            renderedContents = sb.toString();
+            return renderedContents;
+        }
+
+        @Override
+        public void write(FileWrapper fw) throws IOException {
+            if (source != null) {
+                fw.write(source, sourceStart, sourceEnd);
+            } else {
+                super.write(fw);
+            }
         }
 
         public String comment() {
+            if (renderedComment != null) {
+                return renderedComment;
+            }
+            ensureParsed();
             StringBuilder sb = new StringBuilder();
             for(int i=0; i < commentLines.size(); i++) {
                 Pair<String,String> line = commentLines.get(i);
@@ -115,27 +166,72 @@ public class LineCommentFile {
                     sb.append(line.second());
                 }
             }
-            return sb.toString();
+            renderedComment = sb.toString();
+            return renderedComment;
+        }
+
+        @Override
+        public int commentLength() {
+            if (renderedComment != null) {
+                return renderedComment.length();
+            }
+            ensureParsed();
+            int length = 0;
+            for (int i = 0; i < commentLines.size(); i++) {
+                String text = commentLines.get(i).second();
+                // the first and last lines are only part of the comment if they are not blank
+                if ((i != 0 && i != commentLines.size() - 1) || !isBlank(text)) {
+                    length += text.length();
+                }
+            }
+            return length;
+        }
+
+        @Override
+        public boolean isBlank() {
+            if (renderedComment != null) {
+                return isBlank(renderedComment);
+            }
+            ensureParsed();
+            for (Pair<String, String> line : commentLines) {
+                if (!isBlank(line.second()))
+                    return false;
+            }
+            return true;
         }
 
-        private void parse(String data) {
-            List<String> dataAsLines = ToolUtil.splitToLines(data);
-            parse(dataAsLines);
+        private void parse(CharSequence data) {
+            LineIterator lines = new LineIterator(data);
+            while (lines.next()) {
+                parseLine(lines.lineAsString());
+            }
+        }
+
+        private void ensureParsed() {
+            if (source != null) {
+                parse(source.subSequence(sourceStart, sourceEnd));
+                source = null;
+            }
         }
 
         private void parse(List<String> data) {
             for (String str : data) {
-                String commmentPrefix = str.substring(0, str.indexOf(prefix) + prefix.length());
-                String commentSuffix = str.substring(str.indexOf(prefix) + prefix.length());
-                commentLines.add(new Pair<String, String>(commmentPrefix, commentSuffix));
+                parseLine(str);
             }
         }
 
+        private void parseLine(String str) {
+            String commmentPrefix = str.substring(0, str.indexOf(prefix) + prefix.length());
+            String commentSuffix = str.substring(str.indexOf(prefix) + prefix.length());
+            commentLines.add(new Pair<String, String>(commmentPrefix, commentSuffix));
+        }
+
         /**
          * Split block into two blocks, with only the
          * first line of the original Block in result.first().
          */
         public Pair<LineCommentBlock, LineCommentBlock> splitFirst() {
+            ensureParsed();
             List<String> fdata = new ArrayList<String>();
             List<String> rdata = new ArrayList<String>();
             boolean first = true;
@@ -149,7 +245,7 @@ public class LineCommentFile {
             }
 
             return new Pair<LineCommentBlock, LineCommentBlock>(
-                    new LineCommentBlock(prefix, fdata, tags), new LineCommentBlock(prefix, rdata, tags));
+                    new LineCommentBlock(prefix, fdata, getTags()), new LineCommentBlock(prefix, rdata, getTags()));
 
         }
     }
@@ -171,8 +267,16 @@ public class LineCommentFile {
              * @throws IOException
              */
             protected LineCommentParsedFile(FileWrapper originalFile) throws IOException {
+                this(originalFile, false);
+            }
+
+            /**
+             * If headerOnly is true, only the leading blocks are parsed.
+             * @see FileParser#parseHeader(FileWrapper)
+             */
+            protected LineCommentParsedFile(FileWrapper originalFile, boolean headerOnly) throws IOException {
                 super(originalFile);
-                fileBlocks = new ArrayList(parseBlocks(originalFile));
+                fileBlocks = new ArrayList(headerOnly ? parseHeaderBlocks(originalFile) : parseBlocks(originalFile));
                 postParse();
                 line_separator = sniffLineSeparator();
             }
@@ -192,8 +296,10 @@ public class LineCommentFile {
                 for(Block b: fileBlocks){
                     if(b instanceof PlainBlock) {
                         blockContent = ((PlainBlock)b).contents();
-                    } else {
+                    } else if(b instanceof CommentBlock) {
                         blockContent = ((CommentBlock)b).contents();
+                    } else {
+                        continue;
                     }
                     separator = ToolUtil.sniffLineSeparator(blockContent);
                     if(separator != null)
@@ -216,6 +322,8 @@ public class LineCommentFile {
             }
 
             public void insertCommentBlock(String commentText) {
+
+                markDirty();
                 CommentBlock cb = createCommentBlock(commentText);
                 cb.addTag(CommentBlock.TOP_COMMENT_BLOCK);
                 fileBlocks.add(0, cb);
@@ -235,18 +343,21 @@ public class LineCommentFile {
 
             public void remove(CommentBlock cb) {
                 //TODO  take care of comments which have non-comment text before the comment.
-                fileBlocks.remove(cb);
+                if (fileBlocks.remove(cb))
+                    markDirty();
             }
 
             public void writeTo(FileWrapper fw) throws IOException {
                 try {
                     if (fw.canWrite()) {
-                        // TODO this is dangerous: a crash before close will destroy the file!
-                        fw.delete();
-                        fw.open(FileWrapper.OpenMode.WRITE);
+                        // The blocks go to a new file that replaces fw only
+                        // when all of them are written, so fw is never left
+                        // half written.
+                        fw.open(FileWrapper.OpenMode.REPLACE);
                         for (Block block : fileBlocks) {
                             block.write(fw);
                         }
+                        fw.commit();
 
                     } else {
                         LOGGER.info("Skipping file " + fw + " because is is not writable");
@@ -266,14 +377,35 @@ public class LineCommentFile {
             }
         }
 
+        @Override
+        public String getName() {
+            return super.getName() + "(" + prefix + ")";
+        }
+
         @Override
         public ParsedFile parseFile(FileWrapper file) throws IOException {
-            return new LineCommentParsedFile(file);
+            return createParsedFile(file, false);
+        }
+
+        @Override
+        public ParsedFile parseHeader(FileWrapper file) throws IOException {
+            return createParsedFile(file, true);
+        }
+
+        /**
+         * Sub classes should override to return their own kind of LineCommentParsedFile.
+         */
+        protected ParsedFile createParsedFile(FileWrapper file, boolean headerOnly) throws IOException {
+            return new LineCommentParsedFile(file, headerOnly);
         }
 
         protected List<Block> parseBlocks(FileWrapper file) throws IOException {
             return LineCommentFile.parseBlocks(file, prefix);
         }
+
+        protected List<Block> parseHeaderBlocks(FileWrapper file) throws IOException {
+            return LineCommentFile.parseHeaderBlocks(file, prefix);
+        }
     }
 
 
@@ -290,54 +422,78 @@ public class LineCommentFile {
     public static List<Block> parseBlocks(final FileWrapper fw,
                                           final String... prefixes) throws IOException {
 
-        boolean inComment = false;
-        final List<Block> result = new ArrayList<Block>();
-        StringBuilder sb = new StringBuilder();
         fw.open(FileWrapper.OpenMode.READ);
         try {
-            List<String> fileAsLines = ToolUtil.splitToLines(fw.readAsString());
+            return splitBlocks(fw.readAsString(), false, prefixes).first();
+        } finally {
+            fw.close();
+        }
+    }
 
-            for (String line : fileAsLines) {
-                if (inComment) {
-                    if (startsWith(line, prefixes)) {
-                        //previous line is also comment, so append to block
-                        sb.append(line);
-                    } else {
-                        result.add(new LineCommentBlock(prefixes[0], sb.toString(), new HashSet<String>()));
-                        sb = new StringBuilder();
-                        inComment = false;
-                        sb.append(line);
-                    }
-                } else {
-                    if (startsWith(line, prefixes)) {
-                        if (sb.length() != 0)
-                            result.add(new PlainBlock(sb.toString()));
-                        inComment = true;
-                        sb = new StringBuilder();
-                        sb.append(line);
+    /**
+     * Same as parseBlocks, but stops at the first block of code that follows
+     * a comment.  The rest of the file becomes a LazyBlock.
+     */
+    public static List<Block> parseHeaderBlocks(final FileWrapper fw,
+                                                final String... prefixes) throws IOException {
+        return FileParser.parseHeaderBlocks(fw, new UnaryFunction<String, Pair<List<Block>, Integer>>() {
+            public Pair<List<Block>, Integer> evaluate(String contents) {
+                return splitBlocks(contents, true, prefixes);
+            }
+        });
+    }
 
-                    } else {
-                        //previous line is also not a comment
-                        sb.append(line);
-                    }
+    /**
+     * Split contents into blocks as described in parseBlocks.  If stopAtCode
+     * is true, splitting stops before the first plain block with a non-blank
+     * line that follows a comment block.  Returns the blocks together with the
+     * index at which splitting stopped, or -1 if all of contents was used.
+     */
+    private static Pair<List<Block>, Integer> splitBlocks(final String contents, final boolean stopAtCode,
+                                                          final String... prefixes) {
+        boolean inComment = false;
+        boolean sawComment = false;
+        // start of the block that the current line belongs to
+        int blockStart = 0;
+        final List<Block> result = new ArrayList<Block>();
+        final LineIterator lines = new LineIterator(contents);
+
+        while (lines.next()) {
+            final boolean isComment = startsWith(lines, prefixes);
+            if (inComment) {
+                if (!isComment) {
+                    result.add(new LineCommentBlock(prefixes[0], contents, blockStart, lines.start(), Collections.<String>emptySet()));
+                    sawComment = true;
+                    inComment = false;
+                    blockStart = lines.start();
                 }
+                //else previous line is also comment, so it continues the block
+            } else {
+                if (isComment) {
+                    if (lines.start() > blockStart)
+                        result.add(new PlainBlock(contents, blockStart, lines.start()));
+                    inComment = true;
+                    blockStart = lines.start();
+                }
+                //else previous line is also not a comment
             }
-            //add the last block
-            if (sb.length() != 0) {
-                if (inComment)
-                    result.add(new LineCommentBlock(prefixes[0], sb.toString(), new HashSet<String>()));
-                else
-                    result.add(new PlainBlock(sb.toString()));
+            if (stopAtCode && sawComment && !inComment && !lines.isBlank()) {
+                return new Pair<List<Block>, Integer>(result, blockStart);
             }
-            return result;
-        } finally {
-            fw.close();
         }
+        //add the last block
+        if (contents.length() > blockStart) {
+            if (inComment)
+                result.add(new LineCommentBlock(prefixes[0], contents, blockStart, contents.length(), Collections.<String>emptySet()));
+            else
+                result.add(new PlainBlock(contents, blockStart, contents.length()));
+        }
+        return new Pair<List<Block>, Integer>(result, -1);
     }
 
-    private static boolean startsWith(String str, String[] prefixes) {
+    private static boolean startsWith(LineIterator line, String[] prefixes) {
         for (String prefix : prefixes) {
-            if (str.startsWith(prefix))
+            if (line.startsWith(prefix))
                 return true;
         }
         return false;
@@ -42,12 +42,14 @@ package org.jvnet.licensetool;
 
 import org.jvnet.licensetool.file.*;
 import org.jvnet.licensetool.generic.Pair;
+import org.jvnet.licensetool.generic.UnaryFunction;
+import org.jvnet.licensetool.util.LineIterator;
 import org.jvnet.licensetool.util.ToolUtil;
 
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.logging.Logger;
 import java.io.IOException;
 import java.util.regex.Pattern;
@@ -65,6 +67,15 @@ public class MultiLineCommentFile {
         final String start;
         final String end;
 
+        // Until the comment is split into lines, it is source[sourceStart, sourceEnd)
+        private CharSequence source;
+        private int sourceStart;
+        private int sourceEnd;
+
+        // contents() and comment(), once built; reset by replace
+        private String renderedContents;
+        private String renderedComment;
+
         public MultiLineCommentBlock(String start, String end, String prefix, final String multiLineComment, Set<String> tags) {
             super(tags);
             this.start = start;
@@ -73,6 +84,24 @@ public class MultiLineCommentFile {
             parse(multiLineComment);
         }
 
+        /**
+         * Create a block for the comment in source from sourceStart up to
+         * sourceEnd, which must begin with start and end with end.  The
+         * comment is not copied or split into lines until its parts are
+         * needed, and it is written straight from source until it is
+         * replaced.
+         */
+        public MultiLineCommentBlock(String start, String end, String prefix,
+                                     CharSequence source, int sourceStart, int sourceEnd, Set<String> tags) {
+            super(tags);
+            this.start = start;
+            this.end = end;
+            this.prefix = prefix;
+            this.source = source;
+            this.sourceStart = sourceStart;
+            this.sourceEnd = sourceEnd;
+        }
+
         public MultiLineCommentBlock(String start, String end, String prefix, List<String> multiLineComment, Set<String> tags) {
             super(tags);
             this.start = start;
@@ -84,27 +113,37 @@ public class MultiLineCommentFile {
         public static CommentBlock createCommentBlock(String start, String end, String prefix,
                                                       final String commentText, final String line_separator) {
             final List<String> commentTextBlock = new ArrayList<String>();
-            List<String> dataAsLines = ToolUtil.splitToLines(commentText);
-            for (String str : dataAsLines) {
-                commentTextBlock.add(prefix + ToolUtil.covertLineBreak(str,line_separator));
+            LineIterator lines = new LineIterator(commentText);
+            while (lines.next()) {
+                commentTextBlock.add(prefix + commentText.substring(lines.start(), lines.contentEnd()) + line_separator);
             }
             commentTextBlock.add(0, start + line_separator);
             commentTextBlock.add(commentTextBlock.size(), end);
-            return  new MultiLineCommentBlock(start, end, prefix, commentTextBlock, new HashSet<String>());
+            return  new MultiLineCommentBlock(start, end, prefix, commentTextBlock, Collections.<String>emptySet());
         }
 
         public Block replace(String content) {
+            ensureParsed();
             commentStart = new Pair<String, String>(commentStart.first(), "");
             commentLines.clear();
-            List<String> parsedData = ToolUtil.splitToLines(content);
-            for (String str : parsedData) {
-                commentLines.add(new Pair<String, String>(prefix, str));
+            LineIterator lines = new LineIterator(content);
+            while (lines.next()) {
+                commentLines.add(new Pair<String, String>(prefix, lines.lineAsString()));
             }
             commentEnd = new Pair<String, String>("", commentEnd.second());
+            renderedContents = null;
+            renderedComment = null;
             return this;
         }
 
         public String contents() {
+            if (renderedContents != null) {
+                return renderedContents;
+            }
+            if (source != null) {
+                renderedContents = source.subSequence(sourceStart, sourceEnd).toString();
+                return renderedContents;
+            }
             StringBuilder sb = new StringBuilder();
             sb.append(commentStart.first());
             sb.append(commentStart.second());
@@ -114,10 +153,24 @@ public class MultiLineCommentFile {
             }
             sb.append(commentEnd.first());
             sb.append(commentEnd.second());
-            return sb.toString();
+            renderedContents = sb.toString();
+            return renderedContents;
+        }
+
+        @Override
+        public void write(FileWrapper fw) throws IOException {
+            if (source != null) {
+                fw.write(source, sourceStart, sourceEnd);
+            } else {
+                super.write(fw);
+            }
         }
 
         public String comment() {
+            if (renderedComment != null) {
+                return renderedComment;
+            }
+            ensureParsed();
             StringBuilder sb = new StringBuilder();
             if(!commentStart.second().trim().equals(""))
                 sb.append(commentStart.second());
@@ -126,7 +179,39 @@ public class MultiLineCommentFile {
             }
             if(!commentEnd.first().trim().equals(""))
                 sb.append(commentEnd.first());            
-            return sb.toString();
+            renderedComment = sb.toString();
+            return renderedComment;
+        }
+
+        @Override
+        public int commentLength() {
+            if (renderedComment != null) {
+                return renderedComment.length();
+            }
+            ensureParsed();
+            int length = 0;
+            if (!isBlank(commentStart.second()))
+                length += commentStart.second().length();
+            for (Pair<String, String> line : commentLines) {
+                length += line.second().length();
+            }
+            if (!isBlank(commentEnd.first()))
+                length += commentEnd.first().length();
+            return length;
+        }
+
+        @Override
+        public boolean isBlank() {
+            if (renderedComment != null) {
+                return isBlank(renderedComment);
+            }
+            // the start and end parts are only part of the comment if they are not blank
+            ensureParsed();
+            for (Pair<String, String> line : commentLines) {
+                if (!isBlank(line.second()))
+                    return false;
+            }
+            return isBlank(commentStart.second()) && isBlank(commentEnd.first());
         }
 
         private void parse(List<String> data) {
@@ -181,6 +266,13 @@ public class MultiLineCommentFile {
             List<String> dataAsLines = ToolUtil.splitToLines(data);
             parse(dataAsLines);
         }
+
+        private void ensureParsed() {
+            if (source != null) {
+                parse(source.subSequence(sourceStart, sourceEnd).toString());
+                source = null;
+            }
+        }
     }
 
     public static class MultiLineCommentFileParser extends FileParser {
@@ -205,8 +297,16 @@ public class MultiLineCommentFile {
              * @throws IOException
              */
             protected BlockCommentParsedFile(FileWrapper originalFile) throws IOException {
+                this(originalFile, false);
+            }
+
+            /**
+             * If headerOnly is true, only the leading blocks are parsed.
+             * @see FileParser#parseHeader(FileWrapper)
+             */
+            protected BlockCommentParsedFile(FileWrapper originalFile, boolean headerOnly) throws IOException {
                 super(originalFile);
-                fileBlocks = new ArrayList(parseBlocks(originalFile));
+                fileBlocks = new ArrayList(headerOnly ? parseHeaderBlocks(originalFile) : parseBlocks(originalFile));
                 postParse();
                 line_separator = sniffLineSeparator();
             }
@@ -226,8 +326,10 @@ public class MultiLineCommentFile {
                 for(Block b: fileBlocks){
                     if(b instanceof PlainBlock) {
                         blockContent = ((PlainBlock)b).contents();
-                    } else {
+                    } else if(b instanceof CommentBlock) {
                         blockContent = ((CommentBlock)b).contents();
+                    } else {
+                        continue;
                     }
                     separator = ToolUtil.sniffLineSeparator(blockContent);
                     if(separator != null)
@@ -249,6 +351,8 @@ public class MultiLineCommentFile {
             }
 
             public void insertCommentBlock(String commentText) {
+
+                markDirty();
                 CommentBlock cb = createCommentBlock(commentText);
                 cb.addTag(CommentBlock.TOP_COMMENT_BLOCK);
                 fileBlocks.add(0, cb);
@@ -272,18 +376,21 @@ public class MultiLineCommentFile {
             }
 
             public void remove(CommentBlock cb) {
-                fileBlocks.remove(cb);
+                if (fileBlocks.remove(cb))
+                    markDirty();
             }
 
             public void writeTo(FileWrapper fw) throws IOException {
                    try {
                     if (fw.canWrite()) {
-                        // TODO this is dangerous: a crash before close will destroy the file!
-                        fw.delete();
-                        fw.open(FileWrapper.OpenMode.WRITE);
+                        // The blocks go to a new file that replaces fw only
+                        // when all of them are written, so fw is never left
+                        // half written.
+                        fw.open(FileWrapper.OpenMode.REPLACE);
                         for (Block block : fileBlocks) {
                             block.write(fw);
                         }
+                        fw.commit();
 
                     } else {
                         LOGGER.info("Skipping file " + fw + " because is is not writable");
@@ -307,15 +414,35 @@ public class MultiLineCommentFile {
 
         }
 
+        @Override
+        public String getName() {
+            return super.getName() + "(" + start + ")";
+        }
+
         @Override
         public ParsedFile parseFile(final FileWrapper file) throws IOException {
-            return new BlockCommentParsedFile(file);
+            return createParsedFile(file, false);
+        }
 
+        @Override
+        public ParsedFile parseHeader(final FileWrapper file) throws IOException {
+            return createParsedFile(file, true);
+        }
+
+        /**
+         * Sub classes should override to return their own kind of BlockCommentParsedFile.
+         */
+        protected ParsedFile createParsedFile(final FileWrapper file, boolean headerOnly) throws IOException {
+            return new BlockCommentParsedFile(file, headerOnly);
         }
 
         private List<Block> parseBlocks(FileWrapper file) throws IOException {
             return MultiLineCommentFile.parseBlocks(file, start, end, prefix);
         }
+
+        private List<Block> parseHeaderBlocks(FileWrapper file) throws IOException {
+            return MultiLineCommentFile.parseHeaderBlocks(file, start, end, prefix);
+        }
     }
 
     /**
@@ -334,50 +461,89 @@ public class MultiLineCommentFile {
         fw.open(FileWrapper.OpenMode.READ);
 
         try {
-            String fileContents = fw.readAsString();
-
-            int commentStart;
-            int commentEnd;
-            int curIndex = 0;
-            List<Block> parsedBlocks = new ArrayList<Block>();
-            String commentString;
-            String plainString;
-
-            while (true) {
-                commentStart = fileContents.indexOf(start, curIndex);
-                if (commentStart != -1) {
-                    if (commentStart != curIndex) {
-                        //capture until the start of the comment
-                        plainString = fileContents.substring(curIndex, commentStart);
-                        parsedBlocks.add(new PlainBlock(plainString));
-                    }
-                    curIndex = commentStart;
-                    commentEnd = fileContents.indexOf(end, commentStart + start.length());
-                    if (commentEnd != -1) {
-                        commentString = fileContents.substring(commentStart, commentEnd + end.length());
-                        parsedBlocks.add(new MultiLineCommentBlock(start, end, prefix, commentString, new HashSet<String>()));
-                        curIndex = commentEnd + end.length();
-                    } else {
-                        // no end comment, though unusual
-                        plainString = fileContents.substring(curIndex);
-                        parsedBlocks.add(new PlainBlock(plainString));
-                        break;
+            CharSequence fileContents = fw.readAsCharSequence();
+            return splitBlocks(fileContents, start, end, prefix, false).first();
+        } finally {
+            fw.close();
+        }
+
+    }
+
+    /**
+     * Same as parseBlocks, but stops at the first block of code that follows
+     * a comment.  The rest of the file becomes a LazyBlock.
+     */
+    public static List<Block> parseHeaderBlocks(final FileWrapper fw,
+                                                final String start, final String end, final String prefix) throws IOException {
+        return FileParser.parseHeaderBlocks(fw, new UnaryFunction<String, Pair<List<Block>, Integer>>() {
+            public Pair<List<Block>, Integer> evaluate(String contents) {
+                return splitBlocks(contents, start, end, prefix, true);
+            }
+        });
+    }
+
+    /**
+     * Split fileContents into blocks as described in parseBlocks.  If stopAtCode
+     * is true, splitting stops before the first non-blank plain block that
+     * follows a comment block.  Returns the blocks together with the index at
+     * which splitting stopped, or -1 if all of fileContents was used.
+     */
+    private static Pair<List<Block>, Integer> splitBlocks(final CharSequence fileContents,
+            final String start, final String end, final String prefix, final boolean stopAtCode) {
+
+        int commentStart;
+        int commentEnd;
+        int curIndex = 0;
+        boolean sawComment = false;
+        List<Block> parsedBlocks = new ArrayList<Block>();
+
+        while (true) {
+            commentStart = ToolUtil.indexOf(fileContents, start, curIndex);
+            if (commentStart != -1) {
+                if (commentStart != curIndex) {
+                    //capture until the start of the comment
+                    if (stopAtCode && sawComment && !isBlank(fileContents, curIndex, commentStart)) {
+                        return new Pair<List<Block>, Integer>(parsedBlocks, curIndex);
                     }
-                } else if (curIndex == fileContents.length()) {
-                    //reached end of file;
-                    break;
+                    parsedBlocks.add(new PlainBlock(fileContents, curIndex, commentStart));
+                }
+                curIndex = commentStart;
+                commentEnd = ToolUtil.indexOf(fileContents, end, commentStart + start.length());
+                if (commentEnd != -1) {
+                    parsedBlocks.add(new MultiLineCommentBlock(start, end, prefix,
+                            fileContents, commentStart, commentEnd + end.length(), Collections.<String>emptySet()));
+                    sawComment = true;
+                    curIndex = commentEnd + end.length();
                 } else {
-                    //no comment further
-                    plainString = fileContents.substring(curIndex);
-                    parsedBlocks.add(new PlainBlock(plainString));
+                    // no end comment, though unusual
+                    if (stopAtCode && sawComment) {
+                        return new Pair<List<Block>, Integer>(parsedBlocks, curIndex);
+                    }
+                    parsedBlocks.add(new PlainBlock(fileContents, curIndex, fileContents.length()));
                     break;
                 }
+            } else if (curIndex == fileContents.length()) {
+                //reached end of file;
+                break;
+            } else {
+                //no comment further
+                if (stopAtCode && sawComment && !isBlank(fileContents, curIndex, fileContents.length())) {
+                    return new Pair<List<Block>, Integer>(parsedBlocks, curIndex);
+                }
+                parsedBlocks.add(new PlainBlock(fileContents, curIndex, fileContents.length()));
+                break;
             }
-            return parsedBlocks;
-        } finally {
-            fw.close();
         }
+        return new Pair<List<Block>, Integer>(parsedBlocks, -1);
+    }
 
+    // Same as str.subSequence(from, to).toString().trim().length() == 0
+    private static boolean isBlank(CharSequence str, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (str.charAt(i) > ' ')
+                return false;
+        }
+        return true;
     }
 
     private static final Logger LOGGER = Logger.getLogger(LineCommentFile.class.getName());
@@ -124,37 +124,124 @@ public class RecognizerFactory {
                     new FileSuffixRecognizer(suffix, new FileParserFactory.BinaryFileParser()));
 	    }
 
+        recognizer.addRecognizer(createBinaryContentRecognizer());
         recognizer.addRecognizer(createShellContentRecognizer());
         return recognizer;
     }
 
-    FileContentRecognizer createShellContentRecognizer() {
+    // Signatures of binary formats, matched against the start of the file
+    private static final byte[][] BINARY_SIGNATURES = {
+            bytes(0xCA, 0xFE, 0xBA, 0xBE),                          // class, Mach-O universal
+            bytes('P', 'K', 0x03, 0x04),                            // zip, jar, war, odf
+            bytes('P', 'K', 0x05, 0x06),                            // empty zip
+            bytes('P', 'K', 0x07, 0x08),                            // spanned zip
+            bytes(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A),     // PNG
+            bytes('G', 'I', 'F', '8', '7', 'a'),                    // GIF
+            bytes('G', 'I', 'F', '8', '9', 'a'),
+            bytes('%', 'P', 'D', 'F', '-'),                         // PDF
+            bytes(0x7F, 'E', 'L', 'F'),                             // ELF
+            bytes(0xFF, 0xD8, 0xFF),                                // JPEG
+            bytes(0x1F, 0x8B),                                      // gzip
+            bytes(0xFD, '7', 'z', 'X', 'Z', 0x00),                  // xz
+            bytes('7', 'z', 0xBC, 0xAF, 0x27, 0x1C),                // 7-Zip
+            bytes(0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1),  // OLE2: doc, xls, vsd
+            bytes(0xFE, 0xED, 0xFA, 0xCE),                          // Mach-O
+            bytes(0xFE, 0xED, 0xFA, 0xCF),
+            bytes(0xCE, 0xFA, 0xED, 0xFE),
+            bytes(0xCF, 0xFA, 0xED, 0xFE)
+    };
+
+    // tar archives have their signature after the first header fields
+    private static final int TAR_SIGNATURE_OFFSET = 257;
+    private static final byte[] TAR_SIGNATURE = bytes('u', 's', 't', 'a', 'r');
+
+    // bzip2 starts with BZh and a block size digit, which text may too, so
+    // the magic of the first block (or of the end of an empty stream) that
+    // follows them must match as well
+    private static final byte[] BZIP2_SIGNATURE = bytes('B', 'Z', 'h');
+    private static final int BZIP2_BLOCK_OFFSET = 4;
+    private static final byte[] BZIP2_BLOCK_MAGIC = bytes(0x31, 0x41, 0x59, 0x26, 0x53, 0x59);
+    private static final byte[] BZIP2_END_MAGIC = bytes(0x17, 0x72, 0x45, 0x38, 0x50, 0x90);
+
+    private static byte[] bytes(int... values) {
+        final byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    private static boolean isBzip2(byte[] head) {
+        if (!hasBytesAt(head, 0, BZIP2_SIGNATURE) || head.length <= BZIP2_SIGNATURE.length) {
+            return false;
+        }
+        final byte blockSize = head[BZIP2_SIGNATURE.length];
+        return blockSize >= '1' && blockSize <= '9'
+                && (hasBytesAt(head, BZIP2_BLOCK_OFFSET, BZIP2_BLOCK_MAGIC)
+                    || hasBytesAt(head, BZIP2_BLOCK_OFFSET, BZIP2_END_MAGIC));
+    }
+
+    private static boolean hasBytesAt(byte[] head, int offset, byte[] signature) {
+        if (head.length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (head[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the first bytes of a file show that it is not text:
+     * either they start with the signature of a known binary format, or they
+     * contain a NUL byte and are not UTF-16 text (which starts with a byte
+     * order mark).
+     */
+    static boolean isBinary(byte[] head) {
+        for (byte[] signature : BINARY_SIGNATURES) {
+            if (hasBytesAt(head, 0, signature)) {
+                return true;
+            }
+        }
+        if (hasBytesAt(head, TAR_SIGNATURE_OFFSET, TAR_SIGNATURE) || isBzip2(head)) {
+            return true;
+        }
+        if (hasBytesAt(head, 0, bytes(0xFE, 0xFF)) || hasBytesAt(head, 0, bytes(0xFF, 0xFE))) {
+            return false;
+        }
+        for (byte b : head) {
+            if (b == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    FileContentRecognizer createBinaryContentRecognizer() {
+        final FileParser parser = new FileParserFactory.BinaryFileParser();
         return new FileContentRecognizer() {
 
-            public FileParser getParser(FileWrapper file) {
-                if (isShellFile(file)) {
-                    return new FileParserFactory.ShellLikeFileParser(SHELL_PREFIX);
+            protected FileParser getParser(FileWrapper file, byte[] head) {
+                if (isBinary(head)) {
+                    return parser;
                 }
                 return null;
             }
+        };
+    }
+
+    FileContentRecognizer createShellContentRecognizer() {
+        return new FileContentRecognizer() {
 
-            private boolean isShellFile(FileWrapper file) {
-                try {
-                    // see if this is a shell script
-                    file.open(FileWrapper.OpenMode.READ);
-                    final String str = file.readLine();
-                    if ((str != null) && str.startsWith("#!")) {
-                        return true;
-                    }
-
-                } catch (IOException exc) {
-                    // action is still null
-                    LOGGER.warning("Could not read file " + file + " to check for shell script");
-                } finally {
-                    file.close();
+            protected FileParser getParser(FileWrapper file, byte[] head) {
+                // see if this is a shell script
+                if (head.length >= 2 && head[0] == '#' && head[1] == '!') {
+                    return new FileParserFactory.ShellLikeFileParser(SHELL_PREFIX);
                 }
-                return false;
-            }            
+                return null;
+            }
         };
 
     }
@@ -183,6 +270,22 @@ public class RecognizerFactory {
     public static class FileContentRecognizer implements FileRecognizer {
 
         public FileParser getParser(FileWrapper file) {
+            final byte[] head;
+            try {
+                head = file.readHead();
+            } catch (IOException exc) {
+                LOGGER.warning("Could not read file " + file + " to recognize its contents");
+                return null;
+            }
+            return getParser(file, head);
+        }
+
+        /**
+         * Recognize the file from its first bytes, as returned by
+         * FileWrapper.readHead().  The head is read once per file and shared
+         * by all content recognizers and, for small files, the parser.
+         */
+        protected FileParser getParser(FileWrapper file, byte[] head) {
             return null;
         }
     }
@@ -0,0 +1,279 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.jvnet.licensetool;
+
+import org.jvnet.licensetool.file.PlainBlock;
+import org.jvnet.licensetool.util.CompiledCopyrightTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The settings of one run, taken from the Arguments once at its start.
+ * <p/>
+ * Arguments made by ArgParser answer every call through a reflective proxy,
+ * and the extra options are a list of strings; the scanner and the actions
+ * ask for settings for every file and every comment block, so they read
+ * them from a RunConfig instead.  The options are parsed into fields, and
+ * the copyright template is read and compiled here.
+ * Instances are immutable and may be shared between threads.
+ */
+public final class RunConfig {
+    // Edit distance the fuzzy option accepts when no distance is given
+    private static final int DEFAULT_FUZZY_DISTANCE = 10;
+    private static final String LICENSOR_OPTION = "licensor:";
+    private static final String FUZZY_OPTION = "fuzzy";
+
+    private final boolean validate;
+    private final boolean verbose;
+    private final boolean dryrun;
+    private final List<File> roots;
+    private final List<String> skipdirs;
+    private final PlainBlock copyrightText;
+    private final CompiledCopyrightTemplate copyrightTemplate;
+    private final String startYear;
+    private final String endYear;
+    private final List<String> options;
+    private final boolean checkEmpty;
+    private final boolean headerOnly;
+    private final boolean fsync;
+    private final List<String> licensors;
+    private final int fuzzyDistance;
+    private final String vcs;
+    private final boolean useLastModified;
+    private final int vcsThreads;
+    private final int threads;
+    private final long directThreshold;
+    private final String cache;
+    private final String metrics;
+    private final String catalog;
+    private final boolean daemon;
+    private final int port;
+
+    /**
+     * Take the settings from args.  The copyright file is read, unless a
+     * license catalog is given, which replaces it.
+     */
+    public RunConfig(LicenseTool.Arguments args) throws IOException {
+        validate = args.validate();
+        verbose = args.verbose();
+        dryrun = args.dryrun();
+        roots = Collections.unmodifiableList(new ArrayList<File>(args.roots()));
+        skipdirs = Collections.unmodifiableList(new ArrayList<String>(args.skipdirs()));
+        startYear = args.startyear();
+        endYear = args.endyear();
+        vcs = args.vcs();
+        useLastModified = args.uselastmodified();
+        vcsThreads = args.vcsthreads();
+        threads = args.threads();
+        directThreshold = args.directthreshold();
+        cache = args.cache();
+        metrics = args.metrics();
+        catalog = args.catalog();
+        daemon = args.daemon();
+        port = args.port();
+
+        options = Collections.unmodifiableList(new ArrayList<String>(args.options()));
+        checkEmpty = options.contains("checkEmpty");
+        headerOnly = options.contains("headerOnly");
+        fsync = options.contains("fsync");
+        final List<String> names = new ArrayList<String>();
+        int distance = -1;
+        for (String option : options) {
+            if (option.startsWith(LICENSOR_OPTION)) {
+                names.add(option.substring(LICENSOR_OPTION.length()));
+            } else if (option.equals(FUZZY_OPTION)) {
+                distance = DEFAULT_FUZZY_DISTANCE;
+            } else if (option.startsWith(FUZZY_OPTION + ":")) {
+                try {
+                    distance = Integer.parseInt(option.substring(FUZZY_OPTION.length() + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad edit distance in option " + option);
+                }
+                if (distance < 0) {
+                    throw new IllegalArgumentException("Bad edit distance in option " + option);
+                }
+            }
+        }
+        licensors = Collections.unmodifiableList(names);
+        fuzzyDistance = distance;
+
+        if (catalog.equals("")) {
+            copyrightText = new PlainBlock(args.copyright());
+            copyrightTemplate = new CompiledCopyrightTemplate(copyrightText);
+        } else {
+            copyrightText = null;
+            copyrightTemplate = null;
+        }
+    }
+
+    public boolean isValidate() {
+        return validate;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public boolean isDryrun() {
+        return dryrun;
+    }
+
+    public List<File> getRoots() {
+        return roots;
+    }
+
+    public List<String> getSkipdirs() {
+        return skipdirs;
+    }
+
+    /**
+     * Return the text of the copyright file, or null if a license catalog
+     * is used instead.
+     */
+    public PlainBlock getCopyrightText() {
+        return copyrightText;
+    }
+
+    /**
+     * Return the compiled copyright template, or null if a license catalog
+     * is used instead.
+     */
+    public CompiledCopyrightTemplate getCopyrightTemplate() {
+        return copyrightTemplate;
+    }
+
+    public String getStartYear() {
+        return startYear;
+    }
+
+    public String getEndYear() {
+        return endYear;
+    }
+
+    /**
+     * Return the extra options as they were given.
+     */
+    public List<String> getOptions() {
+        return options;
+    }
+
+    /**
+     * Return true if empty comment blocks are reported (option checkEmpty).
+     */
+    public boolean isCheckEmpty() {
+        return checkEmpty;
+    }
+
+    /**
+     * Return true if only the leading comments of each file are parsed
+     * during validation (option headerOnly).
+     */
+    public boolean isHeaderOnly() {
+        return headerOnly;
+    }
+
+    /**
+     * Return true if modified files are forced to disk before they replace
+     * the originals (option fsync).
+     */
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    /**
+     * Return the own licensors given by licensor:&lt;name&gt; options, besides
+     * Sun and Oracle.
+     */
+    public List<String> getLicensors() {
+        return licensors;
+    }
+
+    /**
+     * Return the edit distance given by the fuzzy or fuzzy:&lt;n&gt; option,
+     * or -1 if headers must match the template exactly.
+     */
+    public int getFuzzyDistance() {
+        return fuzzyDistance;
+    }
+
+    public String getVcs() {
+        return vcs;
+    }
+
+    public boolean isUseLastModified() {
+        return useLastModified;
+    }
+
+    public int getVcsThreads() {
+        return vcsThreads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getDirectThreshold() {
+        return directThreshold;
+    }
+
+    public String getCache() {
+        return cache;
+    }
+
+    public String getMetrics() {
+        return metrics;
+    }
+
+    public String getCatalog() {
+        return catalog;
+    }
+
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    public int getPort() {
+        return port;
+    }
+}
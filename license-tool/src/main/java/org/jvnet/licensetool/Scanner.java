@@ -42,12 +42,21 @@ package org.jvnet.licensetool;
 
 import org.jvnet.licensetool.file.*;
 import org.jvnet.licensetool.generic.UnaryBooleanFunction;
+import org.jvnet.licensetool.util.Metrics;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
 /**
@@ -57,19 +66,54 @@ public class Scanner {
     private final List<File> roots;
     //run with dryrun option to check if all the files are recognized.
     private final boolean dryrun;
+    private final int threads;
+    // only parse the copyright header of each file
+    private final boolean headerOnly;
     private final List<String> patternsToSkip;
 
     private VCS vcs;
+    // history of the roots read in one pass for this run, or null
+    private final VCSIndex vcsIndex;
+    private ValidationCache cache;
+    // looks up last modified years ahead of processing, if vcsthreads > 0
+    private final LastModifiedLookup lastModifiedLookup;
 
-    public Scanner(LicenseTool.Arguments args, final List<File> files) {
+    public Scanner(RunConfig config, final List<File> files) {
         this.roots = files;
-        this.dryrun = args.dryrun();
-        if (!args.vcs().equals("")) {
-            vcs = VCS.valueOf(args.vcs());
+        this.dryrun = config.isDryrun();
+        // the stop check of parallelScan cannot undo a write that is already
+        // under way, so files are only modified by a sequential scan
+        this.threads = config.isValidate() ? config.getThreads() : 1;
+        this.headerOnly = config.isValidate() && config.isHeaderOnly();
+        if (!config.getVcs().equals("")) {
+            vcs = VCS.valueOf(config.getVcs());
         } else {
-            List<File> roots1 = args.roots();
+            List<File> roots1 = config.getRoots();
             vcs = roots1.size() > 0 ? VCS.sniffVCS(roots1.get(0)) : null;
         }
+        if (vcs != null && config.isUseLastModified() && !config.isValidate()) {
+            // one history pass per root instead of one or two processes per file
+            vcsIndex = new VCSIndex(vcs);
+            for (File root : files) {
+                final long start = Metrics.start();
+                try {
+                    vcsIndex.index(root);
+                } catch (IOException exc) {
+                    LOGGER.warning("Could not read " + vcs + " history of " + root
+                            + ", asking for each file instead: " + exc);
+                } finally {
+                    Metrics.end(Metrics.Phase.VCS, start);
+                }
+            }
+        } else {
+            vcsIndex = null;
+        }
+
+        if (vcs != null && config.isUseLastModified() && !config.isValidate() && config.getVcsThreads() > 0) {
+            lastModifiedLookup = new LastModifiedLookup(vcs, vcsIndex, config.getVcsThreads());
+        } else {
+            lastModifiedLookup = null;
+        }
 
         patternsToSkip = new ArrayList<String>();
     }
@@ -83,6 +127,43 @@ public class Scanner {
         patternsToSkip.add(pattern);
     }
 
+    /**
+     * Return true if file is one of the roots or lies under one, and is not
+     * in a directory to skip, so that scan(files, ...) would get to it from
+     * the roots.
+     */
+    public boolean accepts(final File file) {
+        final String path = canonicalPath(file);
+        boolean underRoot = false;
+        for (File root : roots) {
+            final String rootPath = canonicalPath(root);
+            if (path.equals(rootPath) || path.startsWith(rootPath + File.separator)) {
+                underRoot = true;
+                break;
+            }
+        }
+        if (!underRoot)
+            return false;
+        final File dir = file.isDirectory() ? file : file.getAbsoluteFile().getParentFile();
+        return dir == null || !skipDirectory(dir);
+    }
+
+    private static String canonicalPath(final File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException exc) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Files that passed validation before and have not changed since are
+     * skipped, as if the action had returned true for them.
+     */
+    public void setValidationCache(final ValidationCache cache) {
+        this.cache = cache;
+    }
+
     /**
      * Action interface passed to scan method to act on files.
      * Terminates scan if it returns false.
@@ -96,60 +177,400 @@ public class Scanner {
      * in patternsToSkip.  Passes each file (not directories) to the action.
      * If action returns false, scan terminates.  The result of the scan is
      * the result of the last action call.
+     * If more than one thread is configured, the scan is done by parallelScan.
      */
     public boolean scan(final FileRecognizer recognizer, final Scanner.Action action) {
-        boolean result = true;
-        for (File file : roots) {
-            result = doScan(file, recognizer, action);
-            if (!result)
-                break;
+        return scan(roots, recognizer, action);
+    }
+
+    /**
+     * Same as scan(recognizer, action), but for the given files and
+     * directories instead of the roots the scanner was created with, so that
+     * one scanner can serve several scans.  If vcsthreads was set, only one
+     * scan is possible, because the lookup threads are stopped at its end.
+     */
+    public boolean scan(final List<File> files, final FileRecognizer recognizer, final Scanner.Action action) {
+        try {
+            if (threads > 1) {
+                return parallelScan(files, recognizer, action);
+            }
+            boolean result = true;
+            for (File file : files) {
+                result = doScan(file, recognizer, action);
+                if (!result)
+                    break;
+            }
+            return result;
+        } finally {
+            if (lastModifiedLookup != null) {
+                lastModifiedLookup.shutdown();
+            }
         }
-        return result;
     }
 
     private boolean doScan(final File file, final FileRecognizer recognizer, final Scanner.Action action) {
         boolean result = true;
         if (file.isDirectory()) {
             if (!skipDirectory(file)) {
-                for (File f : file.listFiles()) {
-                    result = doScan(f, recognizer, action);
+                final File[] children = listFiles(file);
+                int prefetched = 0;
+                for (int ctr = 0; ctr < children.length; ctr++) {
+                    prefetched = prefetchLastModified(children, prefetched, ctr);
+                    result = doScan(children[ctr], recognizer, action);
                     if (!result)
                         break;
                 }
             }
         } else {
-            final FileWrapper fw = new FileWrapper(file);
-            try {
-                FileParser parser = recognizer.getParser(fw);
-                if (parser == null) {
-                    LOGGER.warning("Unrecognized file: " + fw);
-                    if (!dryrun) {
-                        return false;
-                    }
+            result = processFile(file, recognizer, action);
+        }
+        return result;
+    }
+
+    private static File[] listFiles(final File dir) {
+        final long start = Metrics.start();
+        final File[] children = dir.listFiles();
+        Metrics.end(Metrics.Phase.WALK, start);
+        return children;
+    }
+
+    // Keep the VCS lookups for the files of a directory a bounded number of
+    // entries ahead of the entry at current.  The lookups for the entries
+    // before from have been started already; returns the new value of from.
+    private int prefetchLastModified(final File[] children, final int from, final int current) {
+        if (lastModifiedLookup == null)
+            return from;
+        final int to = Math.min(children.length, current + lastModifiedLookup.getReadAhead());
+        for (int ctr = from; ctr < to; ctr++) {
+            if (!children[ctr].isDirectory()) {
+                lastModifiedLookup.prefetch(children[ctr]);
+            }
+        }
+        return Math.max(from, to);
+    }
+
+    private boolean processFile(final File file, final FileRecognizer recognizer, final Scanner.Action action) {
+        return processFile(file, recognizer, action, null);
+    }
+
+    // task is the parallel scan task processing the file, or null for a
+    // sequential scan.
+    private boolean processFile(final File file, final FileRecognizer recognizer, final Scanner.Action action,
+                                final ScanTask task) {
+        boolean result = true;
+        final FileWrapper fw = new FileWrapper(file);
+        // taken even if the file is skipped, so that a lookup that is not needed is cancelled
+        final Future<String> lastModifiedYear = lastModifiedLookup != null ? lastModifiedLookup.take(file) : null;
+        try {
+            FileStamp stamp = null;
+            if (!dryrun && cache != null) {
+                if (cache.isClean(file)) {
+                    return true;
                 }
+                // taken before parsing, so an edit made during validation is not recorded as clean
+                stamp = FileStamp.of(file);
+            }
+            long start = Metrics.start();
+            FileParser parser = recognizer.getParser(fw);
+            Metrics.end(Metrics.Phase.RECOGNIZE, start);
+            if (parser == null) {
+                LOGGER.warning("Unrecognized file: " + fw);
                 if (!dryrun) {
-                    ParsedFile pfile = parser.parseFile(fw);
-                    if (pfile != null) {
-                        pfile.setVCS(vcs);
-                        result = action.evaluate(pfile);
+                    return false;
+                }
+            }
+            if (parser != null && Metrics.isEnabled()) {
+                Metrics.countFile(parser.getName());
+            }
+            if (!dryrun) {
+                start = Metrics.start();
+                ParsedFile pfile = headerOnly ? parser.parseHeader(fw) : parser.parseFile(fw);
+                Metrics.end(Metrics.Phase.PARSE, start);
+                if (pfile != null) {
+                    pfile.setVCS(vcs, vcsIndex);
+                    pfile.setStamp(stamp);
+                    if (lastModifiedYear != null) {
+                        pfile.setLastModifiedYear(lastModifiedYear);
                     }
+                    // an earlier file may have stopped the scan while this one was parsed
+                    if (task != null && task.isAfterStop()) {
+                        return true;
+                    }
+                    result = action.evaluate(pfile);
                 }
-            } catch (IOException exc) {
-                LOGGER.warning("Exception while processing file " + fw + ": " + exc);
-                exc.printStackTrace();
-                return false;
-            } catch (Exception exc) {
-                LOGGER.warning("Exception while processing file " + fw + ": " + exc);
-                exc.printStackTrace();
-                return false;
-            } finally {
-                fw.close();
             }
-
+        } catch (IOException exc) {
+            LOGGER.warning("Exception while processing file " + fw + ": " + exc);
+            exc.printStackTrace();
+            return false;
+        } catch (Exception exc) {
+            LOGGER.warning("Exception while processing file " + fw + ": " + exc);
+            exc.printStackTrace();
+            return false;
+        } finally {
+            fw.close();
+            if (lastModifiedYear != null) {
+                lastModifiedYear.cancel(false);
+            }
         }
         return result;
     }
 
+    /**
+     * Same as scan, but directories are split into one task per entry on a
+     * fork/join pool, so that recognition, parsing and the action run for
+     * several files at once.  The action must therefore be safe to call from
+     * several threads.  Only used for validation; a scan that modifies files
+     * is always sequential.
+     * <p/>
+     * Log records produced for a file are held back and published in the order
+     * a sequential scan would have produced them.  If the action returns false
+     * for a file, no file that comes after it in that order is started, and the
+     * report ends with that file.  Files after it that were already started are
+     * not passed to the action.  Files before it are always processed, so the
+     * report does not depend on thread timing.
+     */
+    private boolean parallelScan(final List<File> files, final FileRecognizer recognizer, final Scanner.Action action) {
+        final ScanReport report = new ScanReport();
+        final AtomicReference<int[]> stopAt = new AtomicReference<int[]>();
+        final List<ScanTask> tasks = new ArrayList<ScanTask>();
+        for (int ctr = 0; ctr < files.size(); ctr++) {
+            tasks.add(new ScanTask(files.get(ctr), new int[]{ctr}, recognizer, action, report, stopAt));
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        report.install();
+        try {
+            List<ScanOutcome> outcomes = pool.invoke(new RootsTask(tasks));
+
+            boolean result = true;
+            for (ScanOutcome outcome : outcomes) {
+                report.publish(outcome.records);
+                if (outcome.evaluated) {
+                    result = outcome.result;
+                    if (!result)
+                        break;
+                }
+            }
+            return result;
+        } finally {
+            pool.shutdown();
+            report.uninstall();
+        }
+    }
+
+    /**
+     * What happened to a single file or directory during a parallel scan.
+     */
+    private static class ScanOutcome {
+        List<LogRecord> records = Collections.emptyList();
+        boolean evaluated = false;
+        boolean result = true;
+    }
+
+    /**
+     * Runs the tasks of the roots of a parallel scan, and collects their
+     * outcomes in order.
+     */
+    private static class RootsTask extends RecursiveTask<List<ScanOutcome>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ScanTask> tasks;
+
+        RootsTask(List<ScanTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        protected List<ScanOutcome> compute() {
+            invokeAll(tasks);
+            final List<ScanOutcome> result = new ArrayList<ScanOutcome>();
+            for (ScanTask task : tasks) {
+                result.addAll(task.join());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Scans one file or directory.  position is the path of indexes that leads
+     * from the roots to the file; comparing positions gives the order of a
+     * sequential depth-first scan.
+     */
+    private class ScanTask extends RecursiveTask<List<ScanOutcome>> {
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+        private final int[] position;
+        private final FileRecognizer recognizer;
+        private final Scanner.Action action;
+        private final ScanReport report;
+        private final AtomicReference<int[]> stopAt;
+
+        ScanTask(File file, int[] position, FileRecognizer recognizer, Scanner.Action action,
+                 ScanReport report, AtomicReference<int[]> stopAt) {
+            this.file = file;
+            this.position = position;
+            this.recognizer = recognizer;
+            this.action = action;
+            this.report = report;
+            this.stopAt = stopAt;
+        }
+
+        protected List<ScanOutcome> compute() {
+            if (isAfterStop()) {
+                return Collections.emptyList();
+            }
+            final ScanOutcome outcome = new ScanOutcome();
+            if (file.isDirectory()) {
+                boolean skip;
+                report.begin();
+                try {
+                    skip = skipDirectory(file);
+                } finally {
+                    outcome.records = report.end();
+                }
+                if (skip) {
+                    return Collections.singletonList(outcome);
+                }
+
+                final File[] children = listFiles(file);
+                final List<ScanTask> subtasks = new ArrayList<ScanTask>(children.length);
+                for (int ctr = 0; ctr < children.length; ctr++) {
+                    int[] childPosition = new int[position.length + 1];
+                    System.arraycopy(position, 0, childPosition, 0, position.length);
+                    childPosition[position.length] = ctr;
+                    subtasks.add(new ScanTask(children[ctr], childPosition, recognizer, action, report, stopAt));
+                }
+                invokeAll(subtasks);
+
+                final List<ScanOutcome> result = new ArrayList<ScanOutcome>();
+                result.add(outcome);
+                for (ScanTask subtask : subtasks) {
+                    result.addAll(subtask.join());
+                }
+                return result;
+            } else {
+                report.begin();
+                try {
+                    outcome.result = processFile(file, recognizer, action, this);
+                    outcome.evaluated = true;
+                } finally {
+                    outcome.records = report.end();
+                }
+                if (!outcome.result) {
+                    stop();
+                }
+                return Collections.singletonList(outcome);
+            }
+        }
+
+        private boolean isAfterStop() {
+            int[] stop = stopAt.get();
+            return stop != null && compare(position, stop) > 0;
+        }
+
+        // Record this file as the place to stop, unless an earlier file already did.
+        private void stop() {
+            while (true) {
+                int[] stop = stopAt.get();
+                if (stop != null && compare(stop, position) <= 0)
+                    return;
+                if (stopAt.compareAndSet(stop, position))
+                    return;
+            }
+        }
+    }
+
+    // Compares two scan positions; a directory comes before its contents.
+    private static int compare(final int[] pos1, final int[] pos2) {
+        final int len = Math.min(pos1.length, pos2.length);
+        for (int ctr = 0; ctr < len; ctr++) {
+            if (pos1[ctr] != pos2[ctr])
+                return pos1[ctr] < pos2[ctr] ? -1 : 1;
+        }
+        return pos1.length - pos2.length;
+    }
+
+    /**
+     * Collects the log records produced by a scan task on the current thread, so
+     * that parallelScan can publish them in scan order.  While installed, it takes
+     * the place of the handlers that would otherwise receive the records of the
+     * org.jvnet.licensetool loggers.  Records logged outside a task are passed on
+     * immediately.
+     */
+    private static class ScanReport extends Handler {
+        private final Logger logger = Logger.getLogger("org.jvnet.licensetool");
+        private final ThreadLocal<List<LogRecord>> current = new ThreadLocal<List<LogRecord>>();
+        private final List<Handler> targets = new ArrayList<Handler>();
+        private Handler[] ownHandlers;
+        private boolean useParentHandlers;
+
+        void install() {
+            ownHandlers = logger.getHandlers();
+            useParentHandlers = logger.getUseParentHandlers();
+            targets.addAll(Arrays.asList(ownHandlers));
+            Logger parent = logger;
+            while (parent.getUseParentHandlers() && parent.getParent() != null) {
+                parent = parent.getParent();
+                targets.addAll(Arrays.asList(parent.getHandlers()));
+            }
+            for (Handler handler : ownHandlers) {
+                logger.removeHandler(handler);
+            }
+            logger.addHandler(this);
+            logger.setUseParentHandlers(false);
+        }
+
+        void uninstall() {
+            logger.removeHandler(this);
+            for (Handler handler : ownHandlers) {
+                logger.addHandler(handler);
+            }
+            logger.setUseParentHandlers(useParentHandlers);
+        }
+
+        void begin() {
+            current.set(new ArrayList<LogRecord>());
+        }
+
+        List<LogRecord> end() {
+            List<LogRecord> records = current.get();
+            current.remove();
+            if (records.isEmpty())
+                return Collections.emptyList();
+            return records;
+        }
+
+        void publish(List<LogRecord> records) {
+            for (LogRecord record : records) {
+                deliver(record);
+            }
+        }
+
+        public void publish(LogRecord record) {
+            List<LogRecord> records = current.get();
+            if (records != null) {
+                records.add(record);
+            } else {
+                deliver(record);
+            }
+        }
+
+        private void deliver(LogRecord record) {
+            for (Handler handler : targets) {
+                handler.publish(record);
+            }
+        }
+
+        public void flush() {
+            for (Handler handler : targets) {
+                handler.flush();
+            }
+        }
+
+        public void close() {
+        }
+    }
 
     private boolean skipDirectory(final File file) {
         for (String pattern : patternsToSkip) {
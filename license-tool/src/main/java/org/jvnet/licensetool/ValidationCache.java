@@ -0,0 +1,236 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import org.jvnet.licensetool.file.FileStamp;
+import org.jvnet.licensetool.util.ToolUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the files that passed validation, so that a later run can skip
+ * them if they have not changed.
+ * <p/>
+ * Each entry holds the size and last modified time of a file, taken before
+ * the file was validated, and its SHA-1 digest, computed once it passed.
+ * A file is unchanged if its size and time are the same, or if its size is
+ * the same and so is its digest (a fresh checkout changes every time stamp).
+ * Only clean files are recorded: files with validation errors are validated
+ * again, so that their errors are reported on every run.
+ * <p/>
+ * The cache file starts with a digest of the configuration (the copyright
+ * text, years and options).  If the configuration changes, the old entries
+ * are discarded.  The cache may be used by several threads at once.
+ */
+public class ValidationCache {
+    private static final Logger LOGGER = Logger.getLogger(ValidationCache.class.getName());
+    private static final String HEADER = "# licensetool validation cache 1";
+    private static final String ENCODING = "UTF-8";
+
+    private final File cacheFile;
+    private final String configDigest;
+    private final Map<String, FileStamp> entries = new ConcurrentHashMap<String, FileStamp>();
+
+    public ValidationCache(File cacheFile, String configDigest) {
+        this.cacheFile = cacheFile;
+        this.configDigest = configDigest;
+    }
+
+    /**
+     * Digest of everything besides the file itself that affects the result
+     * of validation.
+     */
+    public static String configDigest(RunConfig config) {
+        final MessageDigest md = ToolUtil.newDigest();
+        update(md, config.getCopyrightText().contents());
+        update(md, config.getStartYear());
+        update(md, config.getEndYear());
+        update(md, String.valueOf(config.getOptions()));
+        update(md, String.valueOf(config.isUseLastModified()));
+        update(md, config.getVcs());
+        return ToolUtil.toHex(md.digest());
+    }
+
+    private static void update(MessageDigest md, String value) {
+        try {
+            md.update(String.valueOf(value).getBytes(ENCODING));
+            md.update((byte) 0);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read the cache file, if there is one.  A missing or unreadable cache
+     * file, or one written for a different configuration, leaves the cache
+     * empty.
+     */
+    public void load() {
+        entries.clear();
+        if (!cacheFile.isFile())
+            return;
+        try {
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(cacheFile), ENCODING));
+            try {
+                if (!HEADER.equals(reader.readLine()) || !configDigest.equals(reader.readLine())) {
+                    LOGGER.fine("Validation cache " + cacheFile + " is out of date");
+                    return;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String[] fields = line.split("\t", 4);
+                    if (fields.length != 4)
+                        continue;
+                    entries.put(fields[3], new FileStamp(Long.parseLong(fields[0]),
+                            Long.parseLong(fields[1]), fields[2]));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Could not read validation cache " + cacheFile + ": " + e);
+            entries.clear();
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Could not read validation cache " + cacheFile + ": " + e);
+            entries.clear();
+        }
+        LOGGER.fine("Validation cache " + cacheFile + " has " + entries.size() + " entries");
+    }
+
+    /**
+     * Write the cache file.  The entries are written to a temporary file
+     * that then replaces the cache file, so an interrupted run does not
+     * leave a truncated cache behind.  Entries of files that no longer
+     * exist are dropped.
+     */
+    public void save() {
+        final File dir = cacheFile.getAbsoluteFile().getParentFile();
+        try {
+            final File temp = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+            try {
+                final Writer writer = new BufferedWriter(
+                        new OutputStreamWriter(new FileOutputStream(temp), ENCODING));
+                try {
+                    writer.write(HEADER);
+                    writer.write('\n');
+                    writer.write(configDigest);
+                    writer.write('\n');
+                    for (Map.Entry<String, FileStamp> e : entries.entrySet()) {
+                        if (!new File(e.getKey()).isFile()) {
+                            // forget deleted files, so a long-lived process does not keep them
+                            entries.remove(e.getKey());
+                            continue;
+                        }
+                        final FileStamp entry = e.getValue();
+                        writer.write(entry.getSize() + "\t" + entry.getLastModified() + "\t"
+                                + entry.getDigest() + "\t" + e.getKey() + "\n");
+                    }
+                } finally {
+                    writer.close();
+                }
+                Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Could not write validation cache " + cacheFile + ": " + e);
+        }
+    }
+
+    /**
+     * Return true if file passed validation before and has not changed since.
+     */
+    public boolean isClean(File file) throws IOException {
+        final String key = key(file);
+        final FileStamp entry = entries.get(key);
+        if (entry == null)
+            return false;
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+        if (entry.getSize() == size) {
+            if (entry.getLastModified() == lastModified)
+                return true;
+            if (entry.getDigest().equals(ToolUtil.digest(file))) {
+                entries.put(key, new FileStamp(size, lastModified, entry.getDigest()));
+                return true;
+            }
+        }
+        entries.remove(key);
+        return false;
+    }
+
+    /**
+     * Record that file passed validation.  stamp must have been taken before
+     * the file was read for validation; a file whose size or time changed
+     * since is not recorded as clean.  Only files that pass are read for
+     * their digest.
+     */
+    public void markClean(File file, FileStamp stamp) {
+        try {
+            final FileStamp entry = stamp.getDigest() != null ? stamp : stamp.withDigest(file);
+            if (entry != null) {
+                entries.put(key(file), entry);
+            }
+        } catch (IOException e) {
+            LOGGER.fine("Not caching " + file + ": " + e);
+        }
+    }
+
+    private static String key(File file) {
+        return file.getAbsolutePath();
+    }
+}
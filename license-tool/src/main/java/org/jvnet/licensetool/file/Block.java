@@ -52,21 +52,28 @@ import java.util.regex.Pattern;
  * @see ParsedFile
  */
 public abstract class Block {
-    protected final Set<String> tags;
+    // the tags that have a bit in TagRegistry
+    private long tagBits;
+    // the other tags, if there are any
+    private Set<String> otherTags;
 
+    /**
+     * Create a block with the given tags.  The set is copied, not kept.
+     */
     Block(Set<String> tags) {
-        this.tags = tags;
+        for (String tag : tags) {
+            addTag(tag);
+        }
     }
 
     Block() {
-        this.tags = new HashSet<String>();
     }
 
     public String toString() {
         final StringBuilder sb = new StringBuilder();
         sb.append(this.getClass().getName()).append("[");
         boolean first = true;
-        for (String tag : tags) {
+        for (String tag : getTags()) {
             if (first) {
                 first = false;
             } else {
@@ -79,19 +86,63 @@ public abstract class Block {
         return sb.toString();
     }
 
+    /**
+     * Return a mask for use with hasTags(long) that selects all of the
+     * given tags.  Tags are given bit positions as they are first used,
+     * and there is room for 64 of them; an IllegalArgumentException is
+     * thrown if a tag can no longer get one.
+     */
+    public static long tagMask(final String... tags) {
+        long mask = 0;
+        for (String tag : tags) {
+            final int bit = TagRegistry.TAGS.bit(tag);
+            if (bit < 0)
+                throw new IllegalArgumentException("No more tag masks available for tag " + tag);
+            mask |= 1L << bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Return a copy of the tags of this block.
+     */
+    public Set<String> getTags() {
+        final Set<String> result = new LinkedHashSet<String>();
+        for (int bit = 0; bit < TagRegistry.MAX_TAGS; bit++) {
+            if ((tagBits & (1L << bit)) != 0) {
+                result.add(TagRegistry.TAGS.name(bit));
+            }
+        }
+        if (otherTags != null) {
+            result.addAll(otherTags);
+        }
+        return result;
+    }
 
     /**
      * Add a tag to the block.  Useful for classifying blocks.
      */
     public void addTag(final String tag) {
-        tags.add(tag);
+        final int bit = TagRegistry.TAGS.bit(tag);
+        if (bit >= 0) {
+            tagBits |= 1L << bit;
+        } else {
+            if (otherTags == null) {
+                otherTags = new HashSet<String>();
+            }
+            otherTags.add(tag);
+        }
     }
 
     /**
      * Return whether or not a block has a particular tag.
      */
     public boolean hasTag(final String tag) {
-        return tags.contains(tag);
+        final int bit = TagRegistry.TAGS.lookup(tag);
+        if (bit >= 0) {
+            return (tagBits & (1L << bit)) != 0;
+        }
+        return otherTags != null && otherTags.contains(tag);
     }
 
     /**
@@ -105,6 +156,14 @@ public abstract class Block {
         return true;
     }
 
+    /**
+     * Return whether or not a block has ALL of the tags in mask, as
+     * returned by tagMask.
+     */
+    public boolean hasTags(final long mask) {
+        return (tagBits & mask) == mask;
+    }
+
     /**
      * Write block to FileWrapper.  FileWrapper must be open for writing.
      */
@@ -104,11 +104,11 @@ public abstract class CommentBlock extends Block {
 
     public CommentBlock(Set<String> tags) {
         super(tags);
-        tags.add(COMMENT_BLOCK_TAG);
+        addTag(COMMENT_BLOCK_TAG);
     }
 
     public CommentBlock() {
-        tags.add(COMMENT_BLOCK_TAG);
+        addTag(COMMENT_BLOCK_TAG);
     }
 
     public abstract Block replace(String content);
@@ -129,12 +129,40 @@ public abstract class CommentBlock extends Block {
      */
     public abstract String comment();
 
+    /**
+     * Return the length of comment().  Subclasses may answer this without
+     * building the comment.
+     */
+    public int commentLength() {
+        return comment().length();
+    }
+
+    /**
+     * Return true if comment() is empty or only white space.  Subclasses may
+     * answer this without building the comment.
+     */
+    public boolean isBlank() {
+        return isBlank(comment());
+    }
+
+    /**
+     * Same as str.trim().length() == 0, without creating a String.
+     */
+    protected static boolean isBlank(final CharSequence str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) > ' ')
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Return the first string in the block that contains the search string.
      */
     public String find(final String search) {
-        if (contents().contains(search))
-            return contents();
+        final String contents = contents();
+        if (contents.contains(search))
+            return contents;
         return null;
     }
 }
@@ -40,13 +40,75 @@
 
 package org.jvnet.licensetool.file;
 
+import org.jvnet.licensetool.generic.Pair;
+import org.jvnet.licensetool.generic.UnaryFunction;
+
 import java.io.IOException;
+import java.util.List;
 
 /**
  * This class parses FileWrappers into (lists of) Blocks.
  */
 public abstract class FileParser {
+    /**
+     * Number of characters parseHeader reads before it falls back to reading
+     * the whole file.
+     */
+    public static final int HEADER_LIMIT = 64 * 1024;
 
     public abstract ParsedFile parseFile(FileWrapper file) throws IOException;
 
+    /**
+     * Return a short name for this parser, such as the name of its class.
+     * Anonymous subclasses are named after the class they extend.
+     */
+    public String getName() {
+        Class<?> c = getClass();
+        while (c.isAnonymousClass()) {
+            c = c.getSuperclass();
+        }
+        return c.getSimpleName();
+    }
+
+    /**
+     * Parse only the leading blocks of the file, up to the first non-comment
+     * code that follows a comment.  The rest of the file is represented by a
+     * LazyBlock, so the ParsedFile can still be written, but only the header
+     * comments are returned by getComments().  This is meant for actions that
+     * only look at the copyright header.
+     * <p/>
+     * Parsers that do not support this parse the whole file.
+     */
+    public ParsedFile parseHeader(FileWrapper file) throws IOException {
+        return parseFile(file);
+    }
+
+    /**
+     * Helper for parseHeader implementations.  Reads up to HEADER_LIMIT
+     * characters and passes them to splitter, which returns the leading blocks
+     * and the index at which it stopped, or -1 if it used all of its input.
+     * If the splitter needs more than the prefix, the whole file is read and
+     * split instead.
+     */
+    public static List<Block> parseHeaderBlocks(final FileWrapper fw,
+            final UnaryFunction<String, Pair<List<Block>, Integer>> splitter) throws IOException {
+
+        fw.open(FileWrapper.OpenMode.READ);
+        try {
+            String contents = fw.readAsString(HEADER_LIMIT);
+            Pair<List<Block>, Integer> split = splitter.evaluate(contents);
+            if (split.second() < 0 && contents.length() == HEADER_LIMIT) {
+                // header did not end within the prefix
+                contents = contents + fw.readAsString();
+                split = splitter.evaluate(contents);
+            }
+            List<Block> blocks = split.first();
+            if (split.second() >= 0) {
+                blocks.add(new LazyBlock(fw, split.second()));
+            }
+            return blocks;
+        } finally {
+            fw.close();
+        }
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.file;
+
+import org.jvnet.licensetool.util.ToolUtil;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The size, last modified time and SHA-1 digest of a file at one point in
+ * time.  The digest is only computed when it is asked for with
+ * withDigest, so that taking a stamp does not read the file.
+ */
+public final class FileStamp {
+    private final long size;
+    private final long lastModified;
+    private final String digest;
+
+    public FileStamp(long size, long lastModified, String digest) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.digest = digest;
+    }
+
+    /**
+     * Take the size and time of file as they are now, without a digest.
+     */
+    public static FileStamp of(File file) {
+        return new FileStamp(file.length(), file.lastModified(), null);
+    }
+
+    /**
+     * Return this stamp with the digest of the contents of file, or null if
+     * the size or time of file are no longer those of this stamp.  The size
+     * and time are checked after the digest, so that a file that changes
+     * meanwhile does not get a digest of newer contents.
+     */
+    public FileStamp withDigest(File file) throws IOException {
+        final String d = ToolUtil.digest(file);
+        if (file.length() != size || file.lastModified() != lastModified) {
+            return null;
+        }
+        return new FileStamp(size, lastModified, d);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Return the digest, or null if it has not been computed.
+     */
+    public String getDigest() {
+        return digest;
+    }
+}
@@ -40,7 +40,21 @@
 
 package org.jvnet.licensetool.file;
 
+import org.jvnet.licensetool.util.Metrics;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.regex.Pattern;
@@ -64,6 +78,12 @@ public class FileWrapper implements Closeable {
     private FileOutputStream fos;
     private OutputStreamWriter osw;
     private BufferedWriter writer;
+    // the stream written in REPLACE mode, until commit or close
+    private ReplacingOutputStream replacing;
+    // the first bytes of the file, once readHead has been called
+    private byte[] head;
+    // true if head holds the whole file
+    private boolean headComplete;
 
 
     public enum FileState {
@@ -72,6 +92,45 @@ public class FileWrapper implements Closeable {
 
     private FileWrapper.FileState state;
 
+    // Size of the chunks used by readAsString
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // Largest initial capacity readAsString will allocate from the file length
+    private static final int MAX_PRESIZE = 64 * 1024 * 1024;
+
+    /**
+     * Number of bytes read and kept by readHead.
+     */
+    public static final int HEAD_SIZE = 8 * 1024;
+
+    // Size of the buffer used when a file is replaced
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    public static final long DEFAULT_DIRECT_THRESHOLD = 1024 * 1024;
+
+    // Files of at least this many bytes are decoded from the file channel
+    // through a direct buffer by readAsCharSequence
+    private static volatile long directThreshold = DEFAULT_DIRECT_THRESHOLD;
+
+    /**
+     * Set the size in bytes from which readAsCharSequence decodes files
+     * straight from their channel through a direct buffer instead of reading
+     * them through a Reader.
+     */
+    public static void setDirectThreshold(long threshold) {
+        directThreshold = threshold;
+    }
+
+    // Force replacement files to disk before they replace the original
+    private static volatile boolean syncOnReplace = false;
+
+    /**
+     * Set whether commit forces the data of a replacement file to disk
+     * before it replaces the original file.
+     */
+    public static void setSyncOnReplace(boolean sync) {
+        syncOnReplace = sync;
+    }
+
     /**
      * Create a new FileWrapper for the given File.  Represents the same file in the
      * filesystem as the underlying File object.  getBase() return the FileWrapper
@@ -132,6 +191,36 @@ public class FileWrapper implements Closeable {
         return file.getAbsolutePath();
     }
 
+    /**
+     * Return the first HEAD_SIZE bytes of the file (or all of it, if it is
+     * shorter).  The bytes are read once and kept, so content recognizers can
+     * all look at them without opening the file again; the returned array
+     * must not be modified.  If the head turns out to hold the whole file,
+     * a later open for READ reads from it instead of from the file.
+     * The file may be in any state.
+     */
+    public byte[] readHead() throws IOException {
+        if (head == null) {
+            final long start = Metrics.start();
+            final FileInputStream in = new FileInputStream(file);
+            try {
+                final byte[] buffer = new byte[HEAD_SIZE];
+                int length = 0;
+                int count;
+                while (length < HEAD_SIZE && (count = in.read(buffer, length, HEAD_SIZE - length)) != -1) {
+                    length += count;
+                }
+                headComplete = length < HEAD_SIZE || in.read() == -1;
+                head = length < HEAD_SIZE ? Arrays.copyOf(buffer, length) : buffer;
+                Metrics.addBytesRead(headComplete ? length : length + 1);
+            } finally {
+                in.close();
+                Metrics.end(Metrics.Phase.READ, start);
+            }
+        }
+        return head;
+    }
+
     /**
      * Read the next line from the text file.
      * File state must be FileState OPEN_FOR_READ.
@@ -148,16 +237,122 @@ public class FileWrapper implements Closeable {
         if (state != FileWrapper.FileState.OPEN_FOR_READ)
             throw new IOException(file + " is not open for reading");
 
-        int i;
-        StringBuilder fileContents = new StringBuilder();
+        final long start = Metrics.start();
+        // The file length in bytes is a good estimate of its length in characters,
+        // so size the builder up front and read in large chunks.
+        final long length = file.length();
+        final StringBuilder fileContents = new StringBuilder((int) Math.min(length, MAX_PRESIZE));
+        final char[] buffer = new char[READ_BUFFER_SIZE];
+        int count;
         // Read file into a String
-        while ((i = reader.read()) != -1) {
-            fileContents.append((char) i);
-
+        while ((count = reader.read(buffer)) != -1) {
+            fileContents.append(buffer, 0, count);
         }
+        Metrics.end(Metrics.Phase.READ, start);
         return fileContents.toString();
     }
 
+    /**
+     * Read the whole text file.  Files of at least the direct threshold are
+     * read from the file channel through a small direct buffer and decoded
+     * directly into the returned CharBuffer, so their contents are only held
+     * once on the heap instead of once in a StringBuilder and again in a
+     * String.  The file is not memory-mapped, since on some platforms a
+     * mapped file cannot be replaced until the mapping has been garbage
+     * collected.  Smaller files are read with readAsString().  Nothing may
+     * have been read from the file before.
+     * File state must be FileState OPEN_FOR_READ.
+     */
+    public CharSequence readAsCharSequence() throws IOException {
+        if (state != FileWrapper.FileState.OPEN_FOR_READ)
+            throw new IOException(file + " is not open for reading");
+
+        final long length = file.length();
+        if (fis == null || length < directThreshold || length > Integer.MAX_VALUE) {
+            return readAsString();
+        }
+
+        final long start = Metrics.start();
+        // decode the same way the InputStreamReader used by readAsString does
+        final CharBuffer result = decode(fis.getChannel(), length, Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE));
+        Metrics.end(Metrics.Phase.READ, start);
+        return result;
+    }
+
+    // Decode what is left of channel, about length bytes, through a direct
+    // buffer of READ_BUFFER_SIZE bytes.  A character whose bytes are split
+    // between two reads is decoded once the rest of it has been read.
+    static CharBuffer decode(final ReadableByteChannel channel, final long length, final CharsetDecoder decoder)
+            throws IOException {
+        final ByteBuffer bytes = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        CharBuffer result = CharBuffer.allocate((int) Math.min(length * (double) decoder.averageCharsPerByte(),
+                Integer.MAX_VALUE - 1) + 1);
+        boolean eof = false;
+        while (!eof) {
+            eof = channel.read(bytes) == -1;
+            bytes.flip();
+            while (decoder.decode(bytes, result, eof).isOverflow()) {
+                result = grow(result);
+            }
+            // keep the bytes of a character that continues in the next read
+            bytes.compact();
+        }
+        while (decoder.flush(result).isOverflow()) {
+            result = grow(result);
+        }
+        result.flip();
+        return result;
+    }
+
+    // Copy the characters put into buffer so far into a larger buffer.
+    private static CharBuffer grow(final CharBuffer buffer) {
+        final CharBuffer larger = CharBuffer.allocate(buffer.capacity() * 2 + 1);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * Read at most maxChars characters from the text file.  Fewer characters
+     * are returned only if the end of the file is reached first.
+     * File state must be FileState OPEN_FOR_READ.
+     */
+    public String readAsString(final int maxChars) throws IOException {
+        if (state != FileWrapper.FileState.OPEN_FOR_READ)
+            throw new IOException(file + " is not open for reading");
+
+        final long start = Metrics.start();
+        final char[] buffer = new char[maxChars];
+        int length = 0;
+        while (length < maxChars) {
+            int count = reader.read(buffer, length, maxChars - length);
+            if (count == -1)
+                break;
+            length += count;
+        }
+        Metrics.end(Metrics.Phase.READ, start);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Skip the next chars characters of the text file.
+     * File state must be FileState OPEN_FOR_READ.
+     */
+    public void skip(final long chars) throws IOException {
+        if (state != FileWrapper.FileState.OPEN_FOR_READ)
+            throw new IOException(file + " is not open for reading");
+
+        long remaining = chars;
+        while (remaining > 0) {
+            long skipped = reader.skip(remaining);
+            if (skipped <= 0)
+                throw new EOFException(file + " has fewer than " + chars + " characters");
+            remaining -= skipped;
+        }
+    }
+
     /**
      * Write the line to the end of the file, including a newline.
      * File state must be FileState OPEN_FOR_WRITE.
@@ -182,6 +377,25 @@ public class FileWrapper implements Closeable {
 
     }
 
+    /**
+     * Write the characters of text from start up to end to the end of the
+     * file, without copying them to a String first.
+     * File state must be FileState OPEN_FOR_WRITE.
+     */
+    public void write(final CharSequence text, final int start, final int end) throws IOException {
+        if (state != FileWrapper.FileState.OPEN_FOR_WRITE)
+            throw new IOException(file + " is not open for writing");
+
+        if (text instanceof String) {
+            writer.write((String) text, start, end - start);
+        } else if (text instanceof CharBuffer && ((CharBuffer) text).hasArray()) {
+            final CharBuffer buffer = (CharBuffer) text;
+            writer.write(buffer.array(), buffer.arrayOffset() + buffer.position() + start, end - start);
+        } else {
+            writer.append(text, start, end);
+        }
+    }
+
     /**
      * Close the file, and set its state to CLOSED.
      * This method does not throw any exceptions.
@@ -190,42 +404,284 @@ public class FileWrapper implements Closeable {
         try {
             // Ignore if already closed
             if (state == FileWrapper.FileState.OPEN_FOR_READ) {
+                if (fis != null && Metrics.isEnabled()) {
+                    Metrics.addBytesRead(fis.getChannel().position());
+                }
                 reader.close();
                 isr.close();
-                fis.close();
+                if (fis != null)
+                    fis.close();
             } else if (state == FileWrapper.FileState.OPEN_FOR_WRITE) {
                 writer.close();
                 osw.close();
-                fos.close();
+                if (fos != null)
+                    fos.close();
             }
             state = FileWrapper.FileState.CLOSED;
         } catch (IOException exc) {
             // Ignore stupid close IOException
+        } finally {
+            if (replacing != null) {
+                // not committed: the original file is left as it was
+                replacing.discard();
+                replacing = null;
+            }
+        }
+    }
+
+    /**
+     * Finish writing a file that was opened with OpenMode.REPLACE.  If the
+     * data written is exactly the current contents of the file, nothing has
+     * been written to disk, the file is left alone (so its modification time
+     * does not change) and false is returned.  Otherwise the replacement is
+     * flushed (and forced to disk if setSyncOnReplace(true) was called),
+     * given the permissions of the original file, and moved over the
+     * original in a single step where the file system supports that; true is
+     * returned.  The file is CLOSED afterwards.  If commit is not called,
+     * close discards the replacement and the original file is unchanged.
+     */
+    public boolean commit() throws IOException {
+        if (state != FileWrapper.FileState.OPEN_FOR_WRITE || replacing == null)
+            throw new IOException(file + " is not open for replacing");
+
+        writer.flush();
+        if (!replacing.isChanged()) {
+            close();
+            return false;
+        }
+        Metrics.addBytesWritten(replacing.getBytesWritten());
+        head = null;
+        if (syncOnReplace) {
+            replacing.sync();
+        }
+        writer.close();
+        state = FileWrapper.FileState.CLOSED;
+        final Path target = replacing.getTarget();
+        final Path replacement = replacing.getReplacement().toPath();
+        try {
+            if (Files.exists(target)) {
+                copyPermissions(target, replacement);
+            }
+            try {
+                Files.move(replacement, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException exc) {
+                Files.move(replacement, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            replacing.discard();
+            replacing = null;
+        }
+        return true;
+    }
+
+    /**
+     * The stream written in REPLACE mode.  As long as the data written is the
+     * same as the start of the target file, it is only compared and nothing
+     * is written to disk.  At the first difference, the part that matched is
+     * copied from the target to a new sibling file, which then receives the
+     * rest of the data.
+     */
+    private static class ReplacingOutputStream extends OutputStream {
+        private final Path target;
+        private final String prefix;
+        private final byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+        // the rest of the target, while the data written matches it
+        private InputStream original;
+        // number of bytes that matched the target before the first difference
+        private long matched;
+        private File replacement;
+        private FileOutputStream out;
+        private long written;
+
+        ReplacingOutputStream(Path target, String prefix) throws IOException {
+            this.target = target;
+            this.prefix = prefix;
+            if (Files.isRegularFile(target)) {
+                original = Files.newInputStream(target);
+            } else {
+                diverge();
+            }
+        }
+
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (out == null) {
+                final int same = compare(b, off, len);
+                matched += same;
+                if (same == len)
+                    return;
+                diverge();
+                off += same;
+                len -= same;
+            }
+            out.write(b, off, len);
+            written += len;
+        }
+
+        // Returns the number of leading bytes of b that are the next bytes
+        // of original.  Reads past the first difference.
+        private int compare(byte[] b, int off, int len) throws IOException {
+            int same = 0;
+            while (same < len) {
+                final int count = original.read(buffer, 0, Math.min(buffer.length, len - same));
+                if (count <= 0)
+                    return same;
+                for (int ctr = 0; ctr < count; ctr++) {
+                    if (buffer[ctr] != b[off + same + ctr])
+                        return same + ctr;
+                }
+                same += count;
+            }
+            return same;
+        }
+
+        // Start the replacement with the bytes of the target that matched.
+        private void diverge() throws IOException {
+            closeOriginal();
+            final File dir = target.toAbsolutePath().getParent().toFile();
+            replacement = File.createTempFile("." + prefix + ".", ".tmp", dir);
+            try {
+                out = new FileOutputStream(replacement);
+                if (matched > 0) {
+                    final InputStream in = Files.newInputStream(target);
+                    try {
+                        long remaining = matched;
+                        while (remaining > 0) {
+                            final int count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                            if (count <= 0)
+                                throw new EOFException(target + " changed while it was replaced");
+                            out.write(buffer, 0, count);
+                            remaining -= count;
+                        }
+                    } finally {
+                        in.close();
+                    }
+                }
+            } catch (IOException exc) {
+                discard();
+                throw exc;
+            }
+            written = matched;
+        }
+
+        /**
+         * Return true if the data written so far differs from the target,
+         * which is then the case if the target is longer.
+         */
+        boolean isChanged() throws IOException {
+            if (out == null && original.read() != -1) {
+                diverge();
+            }
+            return out != null;
+        }
+
+        long getBytesWritten() {
+            return written;
+        }
+
+        Path getTarget() {
+            return target;
+        }
+
+        File getReplacement() {
+            return replacement;
+        }
+
+        void sync() throws IOException {
+            out.getFD().sync();
+        }
+
+        public void flush() throws IOException {
+            if (out != null)
+                out.flush();
+        }
+
+        public void close() throws IOException {
+            closeOriginal();
+            if (out != null)
+                out.close();
+        }
+
+        // Close everything and delete the replacement, if it still exists.
+        void discard() {
+            try {
+                close();
+            } catch (IOException exc) {
+                // the replacement is deleted anyway
+            }
+            if (replacement != null) {
+                replacement.delete();
+                replacement = null;
+            }
+        }
+
+        private void closeOriginal() throws IOException {
+            if (original != null) {
+                original.close();
+                original = null;
+            }
+        }
+    }
+
+    // If file is a symbolic link, the file it points to is replaced, not the link.
+    private Path replaceTarget() throws IOException {
+        final Path path = file.toPath();
+        return Files.exists(path) ? path.toRealPath() : path;
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        final PosixFileAttributeView view = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (view != null) {
+            Files.setPosixFilePermissions(to, view.readAttributes().permissions());
+        } else {
+            to.toFile().setExecutable(from.toFile().canExecute());
         }
     }
 
     public enum OpenMode {
-        READ, WRITE
+        READ, WRITE, REPLACE
     }
 
     /**
      * Open the (text) file for I/O.  There are three modes:
      * <ul>
      * <li>READ.  In this mode, the file is prepared for reading,
-     * starting from the beginning.
+     * starting from the beginning.  If readHead found the whole file, it is
+     * read from memory.
      * end-of-file at the time the file is opened.
      * <li>WRITE.  In this mode, the file is prepared for writing,
      * starting at the end of the file.
+     * <li>REPLACE.  In this mode, the data is written to a new file next
+     * to this one, which replaces this file when commit is called.  Until
+     * then the file keeps its old contents, even if the tool is killed.
+     * The new file is only created once the data differs from the current
+     * contents.
      * </ul>
      */
     public void open(final FileWrapper.OpenMode mode) throws IOException {
         if (state == FileWrapper.FileState.CLOSED) {
             if (mode == FileWrapper.OpenMode.READ) {
-                fis = new FileInputStream(file);
-                isr = new InputStreamReader(fis);
+                if (head != null && headComplete) {
+                    // readHead already read the whole file
+                    fis = null;
+                    isr = new InputStreamReader(new ByteArrayInputStream(head));
+                } else {
+                    fis = new FileInputStream(file);
+                    isr = new InputStreamReader(fis);
+                }
                 reader = new BufferedReader(isr);
                 state = FileWrapper.FileState.OPEN_FOR_READ;
+            } else if (mode == FileWrapper.OpenMode.REPLACE) {
+                replacing = new ReplacingOutputStream(replaceTarget(), file.getName());
+                fos = null;
+                osw = new OutputStreamWriter(replacing);
+                writer = new BufferedWriter(osw, WRITE_BUFFER_SIZE);
+                state = FileWrapper.FileState.OPEN_FOR_WRITE;
             } else {
+                head = null;
                 fos = new FileOutputStream(file, true);
                 osw = new OutputStreamWriter(fos);
                 writer = new BufferedWriter(osw);
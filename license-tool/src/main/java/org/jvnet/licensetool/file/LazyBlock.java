@@ -0,0 +1,105 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.file;
+
+import java.io.IOException;
+
+/**
+ * Represents the part of a file that was not parsed by a header-only parse.
+ * The text is read from the file the first time it is needed.
+ *
+ * @see FileParser#parseHeader(FileWrapper)
+ */
+public class LazyBlock extends Block {
+    // Number of characters copied at a time by write
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    private final FileWrapper file;
+    private final long offset;
+    private String data;
+
+    /**
+     * Create a LazyBlock for the contents of file starting at character offset.
+     */
+    public LazyBlock(final FileWrapper file, final long offset) {
+        this.file = file;
+        this.offset = offset;
+    }
+
+    /**
+     * Return the contents, reading them from the file if needed.
+     */
+    public String contents() throws IOException {
+        if (data == null) {
+            FileWrapper fw = new FileWrapper(file.getAbsoluteName());
+            fw.open(FileWrapper.OpenMode.READ);
+            try {
+                fw.skip(offset);
+                data = fw.readAsString();
+            } finally {
+                fw.close();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Copy the contents to fw.  If they have not been read yet, they are
+     * copied from the file in chunks instead of being read all at once.
+     */
+    public void write(FileWrapper fw) throws IOException {
+        if (data != null) {
+            fw.write(data);
+            return;
+        }
+        FileWrapper source = new FileWrapper(file.getAbsoluteName());
+        source.open(FileWrapper.OpenMode.READ);
+        try {
+            source.skip(offset);
+            String chunk;
+            while ((chunk = source.readAsString(COPY_CHUNK_SIZE)).length() > 0) {
+                fw.write(chunk);
+            }
+        } finally {
+            source.close();
+        }
+    }
+}
@@ -41,6 +41,8 @@
 package org.jvnet.licensetool.file;
 
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.io.IOException;
 
@@ -50,6 +52,10 @@ import java.io.IOException;
 public abstract class ParsedFile implements Versioned {
     private final FileWrapper originalFile;
     private VCS vcs;
+    private VCSIndex vcsIndex;
+    private Future<String> lastModifiedYear;
+    private FileStamp stamp;
+    private boolean dirty;
     protected ParsedFile(FileWrapper originalFile) {
         this.originalFile = originalFile;
     }
@@ -60,14 +66,44 @@ public abstract class ParsedFile implements Versioned {
 
     public abstract void remove(CommentBlock cb);
     
+    /**
+     * Record that blocks were removed or inserted since the file was parsed.
+     * Implementations of remove and insertCommentBlock must call this.
+     */
+    protected void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Return true if blocks were removed or inserted since the file was parsed.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
     /**
      * This is similar to writing back to the original file that got parsed.
+     * Does nothing if the file is not dirty.
      *
      * @throws IOException
      */
     public void write() throws IOException {
-      writeTo(originalFile);
+        if (dirty) {
+            writeTo(originalFile);
+        }
+    }
+
+    /**
+     * Write the file back even if it is not dirty, to check that parsing
+     * and writing preserve its contents.  The file is only replaced if the
+     * blocks differ from what was read.
+     *
+     * @throws IOException
+     */
+    public void rewrite() throws IOException {
+        writeTo(originalFile);
     }
+
     public abstract void writeTo(FileWrapper fw) throws IOException ;
 
     public String getPath() {
@@ -75,13 +111,64 @@ public abstract class ParsedFile implements Versioned {
     }
 
     public void setVCS(VCS vcs) {
-        this.vcs = vcs;    
+        setVCS(vcs, null);
+    }
+
+    /**
+     * Use vcs for the last modified year, answered from index where it
+     * covers this file.  index may be null.
+     */
+    public void setVCS(VCS vcs, VCSIndex index) {
+        this.vcs = vcs;
+        this.vcsIndex = index;
     }
 
     public VCS getVCS() {
         return vcs;
     }
 
+    /**
+     * Use the result of a lookup that was started before the file was parsed
+     * as the last modified year.
+     */
+    public void setLastModifiedYear(Future<String> lastModifiedYear) {
+        this.lastModifiedYear = lastModifiedYear;
+    }
+
+    /**
+     * Return the year in which this file was last modified according to its
+     * VCS, or null if it is not known.  Waits for the lookup given to
+     * setLastModifiedYear, if any; otherwise asks the VCS now.
+     */
+    public String getLastModifiedYear() {
+        if (lastModifiedYear != null) {
+            try {
+                return lastModifiedYear.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                LOGGER.warning("Could not get the last modified year of " + getPath() + ": " + e.getCause());
+                return null;
+            }
+        }
+        return vcs == null ? null : vcs.getLastModifiedYear(getPath(), vcsIndex);
+    }
+
+    /**
+     * Record the stamp the file had before it was parsed.
+     */
+    public void setStamp(FileStamp stamp) {
+        this.stamp = stamp;
+    }
+
+    /**
+     * Return the stamp given to setStamp, or null.
+     */
+    public FileStamp getStamp() {
+        return stamp;
+    }
+
     public abstract boolean isPreamble(String line);
     
     private static final Logger LOGGER = Logger.getLogger(FileParser.class.getName());
@@ -53,17 +53,33 @@ import java.io.IOException;
 public class PlainBlock extends Block {
 
     private String data;
+    // The block is source[start, end); data is created from it when needed
+    private CharSequence source;
+    private int start;
+    private int end;
 
     public PlainBlock(final String data, final Set<String> tags) {
         super(tags);
-        this.data = data;
+        setData(data);
     }
 
     /**
      * Create a new PlainBlock from a list of strings.
      */
     public PlainBlock(final String data) {
-        this.data = data;
+        setData(data);
+    }
+
+    /**
+     * Create a PlainBlock for the characters of source from start up to end.
+     * The characters are not copied: the block refers to source, which is
+     * typically the contents of the whole file and shared by all of its
+     * blocks, so source must not change afterwards.
+     */
+    public PlainBlock(final CharSequence source, final int start, final int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
     }
 
     /**
@@ -72,18 +88,28 @@ public class PlainBlock extends Block {
     public PlainBlock(final FileWrapper fw) throws IOException {
         fw.open(FileWrapper.OpenMode.READ);
         try {
-            data = fw.readAsString();
+            setData(fw.readAsString());
         } finally {
             fw.close();
         }
     }
 
+    private void setData(final String data) {
+        this.data = data;
+        this.source = data;
+        this.start = 0;
+        this.end = data.length();
+    }
+
     public String contents() {
+        if (data == null) {
+            data = source.subSequence(start, end).toString();
+        }
         return data;
     }
 
     public void write(FileWrapper fw) throws IOException {
-        fw.write(data);
+        fw.write(source, start, end);
     }
 
     public boolean equals(Object obj) {
@@ -96,12 +122,12 @@ public class PlainBlock extends Block {
         PlainBlock block = (PlainBlock) obj;
 
 
-        String objdata = block.data;
-        return(data.equals(objdata));
+        String objdata = block.contents();
+        return(contents().equals(objdata));
     }
 
     public int hashCode() {
-        return data.hashCode();
+        return contents().hashCode();
     }
 
     /**
@@ -113,7 +139,7 @@ public class PlainBlock extends Block {
     public PlainBlock instantiateTemplate(Map<String, String> parameters) {
 
         final StringBuilder sb = new StringBuilder();
-        final StringTokenizer st = new StringTokenizer(data, "@");
+        final StringTokenizer st = new StringTokenizer(contents(), "@");
 
         // Note that the pattern is always TEXT@KEY@TEXT@KEY@TEXT,
         // so the the first token is not a keyword, and then the tokens
@@ -153,14 +179,14 @@ public class PlainBlock extends Block {
         String patternStr = "(.+?)^";
 
         Pattern pattern = Pattern.compile(patternStr, Pattern.MULTILINE | Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(data);
+        Matcher matcher = pattern.matcher(contents());
         if (matcher.find()) {
             String fline = matcher.group();
             String rest = data.substring(matcher.end());
             return new Pair<Block, Block>(
-                new PlainBlock(fline, tags), new PlainBlock(rest, tags));
+                new PlainBlock(fline, getTags()), new PlainBlock(rest, getTags()));
         } else {
-            return new Pair<Block, Block>(new PlainBlock(data, tags),null);
+            return new Pair<Block, Block>(new PlainBlock(data, getTags()),null);
         }
 
 
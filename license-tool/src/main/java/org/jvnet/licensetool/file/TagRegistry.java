@@ -0,0 +1,105 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.file;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Gives each tag a bit position, so that a Block can keep its tags in a
+ * single long.  Tags are registered the first time they are used; once all
+ * MAX_TAGS positions are taken, further tags get none and Blocks keep them
+ * in a set instead.
+ *
+ * @see Block#tagMask(String...)
+ */
+final class TagRegistry {
+    static final int MAX_TAGS = 64;
+
+    /**
+     * The registry used by all Blocks.
+     */
+    static final TagRegistry TAGS = new TagRegistry();
+
+    private final ConcurrentMap<String, Integer> bits = new ConcurrentHashMap<String, Integer>();
+    private final String[] names = new String[MAX_TAGS];
+    private int next = 0;
+
+    TagRegistry() {
+    }
+
+    /**
+     * Return the bit position of tag, registering it if needed, or -1 if
+     * no position is left.
+     */
+    int bit(final String tag) {
+        final Integer bit = bits.get(tag);
+        if (bit != null) {
+            return bit;
+        }
+        return register(tag);
+    }
+
+    /**
+     * Return the bit position of tag, or -1 if it has none.
+     */
+    int lookup(final String tag) {
+        final Integer bit = bits.get(tag);
+        return bit == null ? -1 : bit;
+    }
+
+    String name(final int bit) {
+        return names[bit];
+    }
+
+    private synchronized int register(final String tag) {
+        final Integer bit = bits.get(tag);
+        if (bit != null) {
+            return bit;
+        }
+        if (next == MAX_TAGS) {
+            return -1;
+        }
+        names[next] = tag;
+        bits.put(tag, next);
+        return next++;
+    }
+}
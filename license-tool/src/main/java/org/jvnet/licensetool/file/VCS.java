@@ -40,17 +40,38 @@
 
 package org.jvnet.licensetool.file;
 
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
+ * The version control systems that can tell when a file was last modified.
+ * <p/>
+ * Asking for one file at a time starts one or two external processes per
+ * file.  A VCSIndex runs a single history pass over a whole tree (git log,
+ * hg log, svn log) and remembers the last modified year of every file in it;
+ * getLastModifiedYear answers from such an index and only falls back to
+ * asking per file for files it does not cover.  The constants themselves
+ * hold no state.
+ *
 * @author Rama Pulavarthi
 */
 public enum VCS {
     CVS {
-        public String getLastModifiedYear(String f) {
+        protected String queryLastModifiedYear(String f) {
             String workingRev = "Working revision:";
             String dateInfo = "date: ";
             String year = null;
@@ -86,7 +107,7 @@ public enum VCS {
     },
 
     SVN {
-        public String getLastModifiedYear(String f) {
+        protected String queryLastModifiedYear(String f) {
             String lastChanged = "Last Changed Date: ";
             String output = "";
             try {
@@ -104,10 +125,80 @@ public enum VCS {
             }
             return year;
         }
+
+        // svn log only lists the paths a revision touched, relative to the
+        // repository root; files that were copied from elsewhere and not
+        // changed since are missing from it, so misses still ask svn info.
+        protected boolean isIndexComplete() {
+            return false;
+        }
+
+        protected boolean buildIndex(final File dir, final Map<String, String> years) throws IOException {
+            final Map<String, String> info = new HashMap<String, String>();
+            parseXmlOutput(dir, new DefaultHandler() {
+                private final StringBuilder text = new StringBuilder();
+
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    text.setLength(0);
+                }
+
+                public void characters(char[] ch, int start, int length) {
+                    text.append(ch, start, length);
+                }
+
+                public void endElement(String uri, String localName, String qName) {
+                    if (qName.equals("url") || qName.equals("root")) {
+                        info.put(qName, text.toString().trim());
+                    }
+                }
+            }, "svn", "info", "--xml", ".");
+            final String prefix;
+            try {
+                final String url = new URI(info.get("url")).getPath();
+                final String root = new URI(info.get("root")).getPath();
+                prefix = url.substring(root.length());
+            } catch (URISyntaxException e) {
+                throw new IOException("Unexpected svn info output: " + info, e);
+            } catch (RuntimeException e) {
+                throw new IOException("Unexpected svn info output: " + info, e);
+            }
+
+            // Entries are listed newest first, so the first year seen for a path wins.
+            parseXmlOutput(dir, new DefaultHandler() {
+                private final StringBuilder text = new StringBuilder();
+                private String year;
+                private boolean deleted;
+
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    text.setLength(0);
+                    if (qName.equals("logentry")) {
+                        year = null;
+                    } else if (qName.equals("path")) {
+                        deleted = "D".equals(attributes.getValue("action"));
+                    }
+                }
+
+                public void characters(char[] ch, int start, int length) {
+                    text.append(ch, start, length);
+                }
+
+                public void endElement(String uri, String localName, String qName) {
+                    if (qName.equals("date")) {
+                        year = toYear(text.toString().trim());
+                    } else if (qName.equals("path") && year != null && !deleted) {
+                        final String path = text.toString().trim();
+                        if (path.startsWith(prefix + "/")) {
+                            addYear(years, new File(dir, path.substring(prefix.length() + 1)), year);
+                        }
+                    }
+                }
+            }, "svn", "log", "-v", "--xml", ".");
+            return true;
+        }
     },
 
     HG {
-        public String getLastModifiedYear(String f) {
+        protected String queryLastModifiedYear(String f) {
             String output = "";
             try {
                 output = executeExternalCommand(new File(f).getParentFile(), "hg", "log", "--limit", "1",
@@ -123,9 +214,246 @@ public enum VCS {
             }
             return null;
         }
+
+        protected boolean buildIndex(final File dir, final Map<String, String> years) throws IOException {
+            final File[] top = new File[1];
+            readExternalCommand(dir, new LineHandler() {
+                public void line(String line) {
+                    if (top[0] == null && line.length() > 0) {
+                        top[0] = new File(line);
+                    }
+                }
+            }, "hg", "root");
+            if (top[0] == null)
+                throw new IOException("hg root printed nothing in " + dir);
+
+            // One "date path" line per file of each changeset, newest first.
+            readExternalCommand(dir, new LineHandler() {
+                public void line(String line) {
+                    final int space = line.indexOf(' ');
+                    if (space > 0) {
+                        addYear(years, new File(top[0], line.substring(space + 1)), toYear(line));
+                    }
+                }
+            }, "hg", "log", "--template", "{files % '{date|shortdate} {file}\\n'}", ".");
+            return true;
+        }
+    },
+
+    GIT {
+        protected String queryLastModifiedYear(String f) {
+            String output = "";
+            try {
+                // the same history as the index walks, so both give the same year
+                output = executeExternalCommand(new File(f).getParentFile(), "git", "log", "-1",
+                        "--first-parent", "-m", "--format=%cd", "--date=short", "--", new File(f).getName());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return toYear(output);
+        }
+
+        protected boolean buildIndex(final File dir, final Map<String, String> years) throws IOException {
+            final File[] top = new File[1];
+            readExternalCommand(dir, new LineHandler() {
+                public void line(String line) {
+                    if (top[0] == null && line.length() > 0) {
+                        top[0] = new File(line);
+                    }
+                }
+            }, "git", "rev-parse", "--show-toplevel");
+            if (top[0] == null)
+                throw new IOException("git rev-parse printed nothing in " + dir);
+
+            // The output is a list of NUL terminated fields, newest commit
+            // first: a date marked by a leading \1, then the paths the commit
+            // touched, relative to the top of the work tree, the first of them
+            // after a newline.  Paths are not quoted in this form, whatever
+            // characters they contain.  Only the first-parent history is
+            // walked, and a merge lists the paths it changed relative to its
+            // first parent, so a change that came in through a merge (or was
+            // made by resolving one) gets the year of the merge.
+            final String[] year = new String[1];
+            final boolean[] first = new boolean[1];
+            readExternalCommand(dir, '\0', new LineHandler() {
+                public void line(String field) {
+                    if (field.startsWith("\1")) {
+                        year[0] = toYear(field.substring(1));
+                        first[0] = true;
+                        return;
+                    }
+                    if (first[0] && field.startsWith("\n")) {
+                        field = field.substring(1);
+                    }
+                    first[0] = false;
+                    if (field.length() > 0 && year[0] != null) {
+                        addYear(years, new File(top[0], field), year[0]);
+                    }
+                }
+            }, "git", "log", "--first-parent", "-m", "-z", "--name-only", "--format=%x01%cd", "--date=short", "--", ".");
+            return true;
+        }
     };
 
-    public abstract String getLastModifiedYear(String f);
+    /**
+     * Return the year in which file f was last modified, or null if it is not
+     * known.
+     */
+    public String getLastModifiedYear(String f) {
+        return getLastModifiedYear(f, null);
+    }
+
+    /**
+     * Same as getLastModifiedYear(f), but answered from index if it covers f.
+     * index may be null.
+     */
+    public String getLastModifiedYear(String f, VCSIndex index) {
+        if (index != null && !index.isEmpty()) {
+            final String path = canonicalPath(new File(f));
+            final String year = index.get(path);
+            if (year != null)
+                return year;
+            if (isIndexComplete() && index.covers(path))
+                return null;
+        }
+        return queryLastModifiedYear(f);
+    }
+
+    /**
+     * Ask the VCS for the last modified year of a single file.
+     */
+    protected abstract String queryLastModifiedYear(String f);
+
+    /**
+     * Fill years with the last modified year of every file under dir, keyed
+     * by canonical path.  Returns false if this VCS cannot do that.
+     */
+    protected boolean buildIndex(File dir, Map<String, String> years) throws IOException {
+        return false;
+    }
+
+    /**
+     * True if every file under an indexed root that has any history is in
+     * the index, so a file that is not in it has never been committed.
+     */
+    protected boolean isIndexComplete() {
+        return true;
+    }
+
+    // The first year seen for a file wins, as histories are read newest first.
+    private static void addYear(Map<String, String> years, File file, String year) {
+        if (year == null)
+            return;
+        final String path = canonicalPath(file);
+        if (!years.containsKey(path)) {
+            years.put(path, year);
+        }
+    }
+
+    private static String canonicalPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    // Returns the leading four digit year of a date, or null.
+    private static String toYear(String date) {
+        if (date != null && date.length() >= 4) {
+            final String year = date.substring(0, 4);
+            if (year.matches("[\\d]{4}")) {
+                return year;
+            }
+        }
+        return null;
+    }
+
+    private interface LineHandler {
+        void line(String line);
+    }
+
+    // Starts a command whose standard output is read by the caller; error
+    // output goes to the error output of the tool.
+    private static Process startExternalCommand(File dir, String... args) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(args);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        if (dir != null) {
+            pb.directory(dir);
+        }
+        Process process = pb.start();
+        process.getOutputStream().close();
+        return process;
+    }
+
+    private static void waitForExternalCommand(Process process, String... args) throws IOException {
+        try {
+            int exitValue = process.waitFor();
+            if (exitValue != 0) {
+                throw new IOException(Arrays.toString(args) + " exited with " + exitValue);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + Arrays.toString(args));
+        }
+    }
+
+    private static void readExternalCommand(File dir, LineHandler handler, String... args) throws IOException {
+        Process process = startExternalCommand(dir, args);
+        try {
+            BufferedReader r = new BufferedReader(new InputStreamReader(
+                    process.getInputStream()));
+            String line;
+            while ((line = r.readLine()) != null) {
+                handler.line(line);
+            }
+        } finally {
+            process.getInputStream().close();
+        }
+        waitForExternalCommand(process, args);
+    }
+
+    // Same as readExternalCommand, for output made of fields that each end
+    // with terminator instead of lines.
+    private static void readExternalCommand(File dir, char terminator, LineHandler handler, String... args)
+            throws IOException {
+        Process process = startExternalCommand(dir, args);
+        try {
+            BufferedReader r = new BufferedReader(new InputStreamReader(
+                    process.getInputStream()));
+            StringBuilder field = new StringBuilder();
+            int c;
+            while ((c = r.read()) >= 0) {
+                if (c == terminator) {
+                    handler.line(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append((char) c);
+                }
+            }
+            if (field.length() > 0) {
+                handler.line(field.toString());
+            }
+        } finally {
+            process.getInputStream().close();
+        }
+        waitForExternalCommand(process, args);
+    }
+
+    private static void parseXmlOutput(File dir, DefaultHandler handler, String... args) throws IOException {
+        Process process = startExternalCommand(dir, args);
+        InputStream is = process.getInputStream();
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(is, handler);
+        } catch (SAXException e) {
+            throw new IOException("Could not parse the output of " + Arrays.toString(args) + ": " + e, e);
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        } finally {
+            is.close();
+        }
+        waitForExternalCommand(process, args);
+    }
 
     private static String executeExternalCommand(File dir, String... args) throws IOException {
         ProcessBuilder pb = new ProcessBuilder(args);
@@ -152,7 +480,8 @@ public enum VCS {
 
     public static VCS sniffVCS(File f) {
         if(!f.isDirectory()) {
-            sniffVCS(f.getParentFile());
+            File parent = f.getAbsoluteFile().getParentFile();
+            return parent == null ? null : sniffVCS(parent);
         }
         if(checkVCSinDir(f, "CVS")) {
             return VCS.CVS;
@@ -160,6 +489,8 @@ public enum VCS {
             return VCS.SVN;
         } else if(checkVCSinRoot(f,".hg")) {
             return VCS.HG;
+        } else if(checkVCSinRoot(f.getAbsoluteFile(),".git")) {
+            return VCS.GIT;
         }
         return null;
     }
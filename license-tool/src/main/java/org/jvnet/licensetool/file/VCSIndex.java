@@ -0,0 +1,102 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * The last modified years of the files under some roots, read from the
+ * history of a VCS in one pass per root.  An index belongs to a single run
+ * of the tool; VCS.getLastModifiedYear answers from it and only asks the
+ * VCS for files it does not cover.  The index may be used by several
+ * threads at once.
+ */
+public final class VCSIndex {
+    private final VCS vcs;
+    // Last modified year by canonical path, for the files under roots.
+    private final Map<String, String> years = new ConcurrentHashMap<String, String>();
+    private final Set<String> roots = new CopyOnWriteArraySet<String>();
+
+    public VCSIndex(VCS vcs) {
+        this.vcs = vcs;
+    }
+
+    public VCS getVCS() {
+        return vcs;
+    }
+
+    /**
+     * Read the history of all files under root in one pass.  Does nothing if
+     * the VCS has no way to do that.
+     */
+    public void index(File root) throws IOException {
+        final File dir = (root.isDirectory() ? root : root.getAbsoluteFile().getParentFile()).getCanonicalFile();
+        final Map<String, String> found = new HashMap<String, String>();
+        if (vcs.buildIndex(dir, found)) {
+            years.putAll(found);
+            roots.add(dir.getPath() + File.separator);
+        }
+    }
+
+    boolean isEmpty() {
+        return roots.isEmpty();
+    }
+
+    // Returns the year of the file with the given canonical path, or null.
+    String get(String path) {
+        return years.get(path);
+    }
+
+    // True if the file with the given canonical path is under an indexed root.
+    boolean covers(String path) {
+        for (String root : roots) {
+            if (path.startsWith(root))
+                return true;
+        }
+        return false;
+    }
+}
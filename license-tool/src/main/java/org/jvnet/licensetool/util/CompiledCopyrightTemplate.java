@@ -0,0 +1,87 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.util;
+
+import org.jvnet.licensetool.file.PlainBlock;
+
+/**
+ * A copyright template that is compiled once and then matched against the
+ * comments of every file.  The template is the copyright text, with "YYYY "
+ * and "YYYY, " standing for the years; it is split into literal segments
+ * and year slots by a CopyrightTemplateMatcher.
+ * Instances are immutable and may be shared between threads.
+ *
+ * @see CopyrightTemplateMatcher
+ */
+public class CompiledCopyrightTemplate {
+    private final PlainBlock copyrightText;
+    private final CopyrightTemplateMatcher matcher;
+
+    public CompiledCopyrightTemplate(PlainBlock copyrightText) {
+        this.copyrightText = copyrightText;
+        this.matcher = new CopyrightTemplateMatcher(copyrightText.contents());
+    }
+
+    public PlainBlock getCopyrightText() {
+        return copyrightText;
+    }
+
+    /**
+     * Return true if the whole comment matches the template.  Line breaks
+     * are normalized before matching, as in ToolUtil.doesCopyrightMatch.
+     */
+    public boolean matches(CharSequence comment) {
+        return matcher.matches(ToolUtil.normalizeString(comment.toString()));
+    }
+
+    /**
+     * Return -1 if the whole comment matches the template, otherwise the
+     * offset of the first difference in the comment after its line breaks
+     * have been normalized.
+     */
+    public int mismatch(CharSequence comment) {
+        return matcher.mismatch(ToolUtil.normalizeString(comment.toString()));
+    }
+
+    public String toString() {
+        return "CompiledCopyrightTemplate[" + copyrightText.contents() + "]";
+    }
+}
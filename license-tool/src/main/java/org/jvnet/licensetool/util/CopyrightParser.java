@@ -68,15 +68,31 @@ public class CopyrightParser {
     private static final Pattern reservedRights =
             Pattern.compile("All rights reserved[.]?", Pattern.CASE_INSENSITIVE);
 
-    private static final String copyright_tag = "Copyright";
+    static final String copyright_tag = "Copyright";
     
     public static void parseCopyright(CommentBlock commentBlock, ParsedFile pfile) {
-        for (String line : ToolUtil.splitToLines(commentBlock.comment())) {
-            Matcher cp1 = copyright_pattern.matcher(line);
+        parse(commentBlock, pfile);
+    }
+
+    /**
+     * Same as parseCopyright, but returns the copyright line whose years were
+     * not recognized, or null if there was none, so that a cached result can
+     * report it again.
+     */
+    static String parse(CommentBlock commentBlock, ParsedFile pfile) {
+        // The matchers are reused for every line, with the region set to the
+        // line, so lines are not copied until a copyright is found.
+        final String comment = commentBlock.comment();
+        final Matcher cp1 = copyright_pattern.matcher(comment);
+        final Matcher m = copyright_year_pattern.matcher(comment);
+        final LineIterator lines = new LineIterator(comment);
+        String unrecognized = null;
+        while (lines.next()) {
+            cp1.region(lines.start(), lines.end());
             if (cp1.find()) {
                 commentBlock.addTag(copyright_tag);
                 commentBlock.addTag(COPYRIGHT_BLOCK_TAG);
-                Matcher m = copyright_year_pattern.matcher(line);
+                m.region(lines.start(), lines.end());
                 if (m.find()) {
                     CommentBlock.Copyright copyright = new CommentBlock.Copyright();
                     String year = m.group(1);
@@ -89,10 +105,11 @@ public class CopyrightParser {
                             copyright.setEndYear(endYear);
                         }
                     } else {
-                        trace("Error: Year pattern not recognized in \"" + line + "\" in file:" + pfile.getPath());
+                        unrecognized = lines.lineAsString();
+                        yearsNotRecognized(unrecognized, pfile);
                     }
 
-                    String remaining = line.substring(m.end(1));
+                    String remaining = comment.substring(m.end(1), lines.end());
                     Matcher rightsMatcher = reservedRights.matcher(remaining);
                     String licensor;
                     if (rightsMatcher.find()) {
@@ -107,6 +124,11 @@ public class CopyrightParser {
                 }
             }
         }
+        return unrecognized;
+    }
+
+    static void yearsNotRecognized(String line, ParsedFile pfile) {
+        trace("Error: Year pattern not recognized in \"" + line + "\" in file:" + pfile.getPath());
     }
 
     private static void trace(String msg) {
@@ -0,0 +1,235 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches comments against a copyright template without regular expressions.
+ * <p/>
+ * The template is the plain copyright text.  On a line that contains
+ * "YYYY ", each "YYYY " stands for a year or a year range followed by a
+ * space ("2003 " or "1997-2011 "); otherwise, on a line that contains
+ * "YYYY, ", each "YYYY, " stands for one or more years each followed by
+ * ", " ("1997, 2011, ").  Everything else must match literally.  These are
+ * the same rules as the regular expression built by
+ * LicenseTool.makeCopyrightPatternBlock, and the results are the same.
+ * <p/>
+ * The template is split once into literal segments and year slots.  Matching
+ * compares the literals with regionMatches and reads the years by hand.
+ * Instances are immutable and may be shared between threads.
+ */
+public class CopyrightTemplateMatcher {
+    private static final String YEAR_RANGE_MARKER = "YYYY ";
+    private static final String YEAR_LIST_MARKER = "YYYY, ";
+
+    private enum Kind {
+        LITERAL, YEAR_RANGE, YEAR_LIST
+    }
+
+    private static class Segment {
+        final Kind kind;
+        final String text;
+
+        Segment(Kind kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    private final Segment[] segments;
+
+    /**
+     * Create a matcher for the given copyright text.  Line breaks in the text
+     * are normalized to "\n"; comments must be normalized the same way.
+     */
+    public CopyrightTemplateMatcher(String copyrightText) {
+        final List<Segment> result = new ArrayList<Segment>();
+        final StringBuilder literal = new StringBuilder();
+        final LineIterator lines = new LineIterator(ToolUtil.normalizeString(copyrightText));
+        while (lines.next()) {
+            final String line = lines.lineAsString();
+            String marker = null;
+            Kind kind = null;
+            if (line.contains(YEAR_RANGE_MARKER)) {
+                marker = YEAR_RANGE_MARKER;
+                kind = Kind.YEAR_RANGE;
+            } else if (line.contains(YEAR_LIST_MARKER)) {
+                marker = YEAR_LIST_MARKER;
+                kind = Kind.YEAR_LIST;
+            }
+
+            int index = 0;
+            if (marker != null) {
+                int next;
+                while ((next = line.indexOf(marker, index)) >= 0) {
+                    literal.append(line, index, next);
+                    if (literal.length() > 0) {
+                        result.add(new Segment(Kind.LITERAL, literal.toString()));
+                        literal.setLength(0);
+                    }
+                    result.add(new Segment(kind, null));
+                    index = next + marker.length();
+                }
+            }
+            literal.append(line, index, line.length());
+        }
+        if (literal.length() > 0) {
+            result.add(new Segment(Kind.LITERAL, literal.toString()));
+        }
+        segments = result.toArray(new Segment[result.size()]);
+    }
+
+    /**
+     * Return true if the whole comment matches the template.
+     */
+    public boolean matches(CharSequence comment) {
+        return mismatch(comment) < 0;
+    }
+
+    /**
+     * Return -1 if the whole comment matches the template, otherwise the
+     * offset of the first character of comment that could not be matched
+     * (comment.length() if the comment is too short).
+     */
+    public int mismatch(CharSequence comment) {
+        final int[] furthest = new int[]{0};
+        if (match(comment, 0, 0, furthest))
+            return -1;
+        return furthest[0];
+    }
+
+    private boolean match(CharSequence input, int segment, int pos, int[] furthest) {
+        if (segment == segments.length) {
+            if (pos == input.length())
+                return true;
+            fail(pos, furthest);
+            return false;
+        }
+
+        final Segment seg = segments[segment];
+        switch (seg.kind) {
+            case LITERAL: {
+                final int end = regionMatches(input, pos, seg.text);
+                if (end < 0) {
+                    fail(-end - 1, furthest);
+                    return false;
+                }
+                return match(input, segment + 1, end, furthest);
+            }
+            case YEAR_RANGE: {
+                // [0-9]{4}(-[0-9]{4})? followed by a space
+                if (!isYear(input, pos, furthest))
+                    return false;
+                int after = pos + 4;
+                if (after < input.length() && input.charAt(after) == '-'
+                        && isYear(input, after + 1, furthest)
+                        && isChar(input, after + 5, ' ', furthest)) {
+                    if (match(input, segment + 1, after + 6, furthest))
+                        return true;
+                }
+                return isChar(input, after, ' ', furthest)
+                        && match(input, segment + 1, after + 1, furthest);
+            }
+            case YEAR_LIST: {
+                // ([0-9]{4}, )+, trying the longest list first
+                int count = 0;
+                int end = pos;
+                while (isYear(input, end, furthest) && isChar(input, end + 4, ',', furthest)
+                        && isChar(input, end + 5, ' ', furthest)) {
+                    end += 6;
+                    count++;
+                }
+                for (; count > 0; count--) {
+                    if (match(input, segment + 1, pos + 6 * count, furthest))
+                        return true;
+                }
+                return false;
+            }
+            default:
+                throw new IllegalStateException(seg.kind.toString());
+        }
+    }
+
+    // Returns the index after text if input contains text at pos,
+    // otherwise -(index of the first difference) - 1.
+    private static int regionMatches(CharSequence input, int pos, String text) {
+        if (input instanceof String && ((String) input).regionMatches(pos, text, 0, text.length())) {
+            return pos + text.length();
+        }
+        final int len = Math.min(text.length(), input.length() - pos);
+        for (int i = 0; i < len; i++) {
+            if (input.charAt(pos + i) != text.charAt(i))
+                return -(pos + i) - 1;
+        }
+        if (len < text.length())
+            return -(pos + len) - 1;
+        return pos + text.length();
+    }
+
+    private static boolean isYear(CharSequence input, int pos, int[] furthest) {
+        for (int i = pos; i < pos + 4; i++) {
+            if (i >= input.length() || !isDigit(input.charAt(i))) {
+                fail(i, furthest);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isChar(CharSequence input, int pos, char ch, int[] furthest) {
+        if (pos < input.length() && input.charAt(pos) == ch)
+            return true;
+        fail(pos, furthest);
+        return false;
+    }
+
+    // same as [0-9] in a regular expression
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static void fail(int pos, int[] furthest) {
+        if (pos > furthest[0])
+            furthest[0] = pos;
+    }
+}
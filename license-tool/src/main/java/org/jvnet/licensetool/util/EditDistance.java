@@ -42,6 +42,8 @@ package org.jvnet.licensetool.util;
 
 import java.util.Collection;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Computes the string edit distance.
@@ -50,6 +52,15 @@ import java.util.Arrays;
  * Refer to a computer science text book for the definition
  * of the "string edit distance".
  *
+ * <p>
+ * The distance is computed with the bit-parallel algorithm of Myers, in
+ * the form for patterns longer than a machine word given by Hyyr&ouml;,
+ * which handles 64 cells of the dynamic programming table at a time.
+ * When only distances up to some bound matter, the strings are first
+ * compared by length and by the 3-grams they have in common, and a small
+ * bound restricts the table to the band of diagonals that can still lead
+ * to the answer (Ukkonen), giving up as soon as the bound is exceeded.
+ *
  * @author
  *     Kohsuke Kawaguchi (kohsuke.kawaguchi@sun.com)
  */
@@ -59,10 +70,41 @@ public class EditDistance {
      * Computes the edit distance between two strings.
      *
      * <p>
-     * The complexity is O(nm) where n=a.length() and m=b.length().
+     * The complexity is O(nm/64) where n=a.length() and m=b.length().
      */
     public static int editDistance( String a, String b ) {
-        return new EditDistance(a,b).calc();
+        return editDistance(a, b, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Computes the edit distance between two strings if it is at most
+     * <code>max</code>.
+     *
+     * <p>
+     * This is much cheaper than {@link #editDistance(String, String)} when
+     * <code>max</code> is small or the strings are far apart.
+     *
+     * @return the edit distance, or max+1 if it is larger than max.
+     */
+    public static int editDistance( String a, String b, int max ) {
+        if (max < 0)
+            throw new IllegalArgumentException("max = " + max);
+        final int over = max == Integer.MAX_VALUE ? max : max + 1;
+        if (a.length() > b.length()) {
+            String t = a;
+            a = b;
+            b = t;
+        }
+        // a is now the shorter string
+        if (b.length() - a.length() > max)
+            return over;
+        if (a.length() == 0)
+            return b.length();
+        if (max < Integer.MAX_VALUE && qgramsExceed(b, a, max))
+            return over;
+        if (2L * max + 1 < 4L * words(a.length()))
+            return banded(a, b, max);
+        return bitParallel(a, b, max);
     }
 
     /**
@@ -79,6 +121,10 @@ public class EditDistance {
      * Finds the string in the <code>group</code> closest to
      * <code>key</code> and returns it.
      *
+     * <p>
+     * Once a candidate is found, the others are only compared up to its
+     * distance.
+     *
      * @return null if group.length==0.
      */
     public static String findNearest( String key, Collection<String> group ) {
@@ -86,55 +132,182 @@ public class EditDistance {
         String r = null;
 
         for (String s : group) {
-            int ed = editDistance(key,s);
-            if( c>ed ) {
-                c = ed;
+            if (r == null) {
+                c = editDistance(key, s);
                 r = s;
+            } else {
+                int ed = editDistance(key, s, c - 1);
+                if( c>ed ) {
+                    c = ed;
+                    r = s;
+                }
             }
+            if (c == 0)
+                break;
         }
         return r;
     }
 
-    /** cost vector. */
-    private int[] cost;
-    /** back buffer. */
-    private int[] back;
+    /** Length of the q-grams compared by {@link #qgramsExceed}. */
+    private static final int Q = 3;
 
-    /** Two strings to be compared. */
-    private final String a,b;
+    /** Number of counters q-grams are hashed into; a power of 2. */
+    private static final int QGRAM_BUCKETS = 4096;
 
-    private EditDistance( String a, String b ) {
-        this.a=a;
-        this.b=b;
-        cost = new int[a.length()+1];
-        back = new int[a.length()+1]; // back buffer
+    /**
+     * Returns true if a and b certainly are more than max edits apart.
+     *
+     * <p>
+     * One edit changes at most Q of the q-grams of a, so if more than
+     * max*Q q-grams of a do not occur in b, the distance exceeds max.
+     * q-grams are counted by hash, so a collision can only make a look
+     * closer to b than it is.
+     */
+    private static boolean qgramsExceed( String a, String b, int max ) {
+        final int grams = a.length() - Q + 1;
+        final long limit = (long) max * Q;
+        if (grams <= limit || b.length() < Q)
+            return false;
+        final int[] counts = new int[QGRAM_BUCKETS];
+        for (int i = 0; i + Q <= b.length(); i++)
+            counts[qgram(b, i)]++;
+        int missing = 0;
+        for (int i = 0; i < grams; i++) {
+            int h = qgram(a, i);
+            if (counts[h] > 0) {
+                counts[h]--;
+            } else if (++missing > limit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int qgram( String s, int i ) {
+        return ((s.charAt(i) * 31 + s.charAt(i + 1)) * 31 + s.charAt(i + 2)) & (QGRAM_BUCKETS - 1);
+    }
 
-        for( int i=0; i<=a.length(); i++ )
-            cost[i] = i;
+    private static int words( int length ) {
+        return (length + 63) >>> 6;
     }
 
     /**
-     * Swaps two buffers.
+     * Dynamic programming restricted to the diagonals at most max away from
+     * the main one; a path that leaves them costs more than max edits.
+     * Requires |a.length()-b.length()| <= max.
      */
-    private void flip() {
-        int[] t = cost;
-        cost = back;
-        back = t;
+    private static int banded( String a, String b, int max ) {
+        final int m = a.length();
+        final int n = b.length();
+        final int inf = Integer.MAX_VALUE / 2;
+        // back holds column j-1 and cost column j of the table, indexed by
+        // position in a; cells outside the band stay at inf
+        int[] back = new int[m + 1];
+        int[] cost = new int[m + 1];
+        Arrays.fill(back, inf);
+        Arrays.fill(cost, inf);
+        for (int i = 0; i <= Math.min(m, max); i++)
+            back[i] = i;
+
+        for (int j = 1; j <= n; j++) {
+            final int lo = Math.max(1, j - max);
+            final int hi = Math.min(m, j + max);
+            final char c = b.charAt(j - 1);
+            cost[lo - 1] = lo == 1 ? j : inf;
+            int least = cost[lo - 1];
+            for (int i = lo; i <= hi; i++) {
+                int d = back[i - 1] + (a.charAt(i - 1) == c ? 0 : 1);
+                d = Math.min(d, Math.min(back[i], cost[i - 1]) + 1);
+                cost[i] = d;
+                if (d < least)
+                    least = d;
+            }
+            if (least > max)
+                return max + 1;
+            int[] t = cost;
+            cost = back;
+            back = t;
+        }
+        return back[m] <= max ? back[m] : max + 1;
     }
 
-    private int min(int a,int b,int c) {
-        return Math.min(a,Math.min(b,c));
+    private static final long HIGH_BIT = 1L << 63;
+
+    /**
+     * Myers' bit-parallel algorithm, with the table split into blocks of 64
+     * rows as described by Hyyr&ouml;.  Column j of the table is kept as the
+     * vertical differences between its cells, one bit vector (pv) for +1
+     * and one (mv) for -1, and each character of b advances all of them at
+     * once.  a must not be empty.
+     */
+    private static int bitParallel( String a, String b, int max ) {
+        final int m = a.length();
+        final int n = b.length();
+        final int w = words(m);
+        final Peq peq = new Peq(a, w);
+        final long[] pv = new long[w];
+        final long[] mv = new long[w];
+        Arrays.fill(pv, -1L);
+        final long lastBit = 1L << ((m - 1) & 63);
+
+        // the bottom cell of the current column
+        int score = m;
+        for (int j = 0; j < n; j++) {
+            final long[] eqs = peq.get(b.charAt(j));
+            // the top row of the table is 0, 1, 2, ...
+            int hin = 1;
+            for (int k = 0; k < w; k++) {
+                long eq = eqs == null ? 0 : eqs[k];
+                final long p = pv[k];
+                final long mvk = mv[k];
+                final long hinNeg = hin < 0 ? 1L : 0L;
+                final long xv = eq | mvk;
+                eq |= hinNeg;
+                final long xh = (((eq & p) + p) ^ p) | eq;
+                long ph = mvk | ~(xh | p);
+                long mh = p & xh;
+                final long bit = k == w - 1 ? lastBit : HIGH_BIT;
+                final int hout = (ph & bit) != 0 ? 1 : (mh & bit) != 0 ? -1 : 0;
+                ph = (ph << 1) | (hin > 0 ? 1L : 0L);
+                mh = (mh << 1) | hinNeg;
+                pv[k] = mh | ~(xv | ph);
+                mv[k] = ph & xv;
+                hin = hout;
+            }
+            score += hin;
+            // each remaining column lowers the score by at most one
+            if (score - (n - j - 1) > max)
+                return max + 1;
+        }
+        return score;
     }
 
-    private int calc() {
-        for( int j=0; j<b.length(); j++ ) {
-            flip();
-            cost[0] = j+1;
-            for( int i=0; i<a.length(); i++ ) {
-                int match = (a.charAt(i)==b.charAt(j))?0:1;
-                cost[i+1] = min( back[i]+match, cost[i]+1, back[i+1]+1 );
+    /**
+     * For each character, the bit vector of the positions of a where it
+     * occurs.
+     */
+    private static final class Peq {
+        private final long[][] ascii = new long[128][];
+        private final Map<Character, long[]> others = new HashMap<Character, long[]>();
+
+        Peq( String a, int words ) {
+            for (int i = 0; i < a.length(); i++) {
+                char c = a.charAt(i);
+                long[] v = get(c);
+                if (v == null) {
+                    v = new long[words];
+                    if (c < 128)
+                        ascii[c] = v;
+                    else
+                        others.put(c, v);
+                }
+                v[i >>> 6] |= 1L << (i & 63);
             }
         }
-        return cost[a.length()];
+
+        /** Returns null for characters that do not occur in a. */
+        long[] get( char c ) {
+            return c < 128 ? ascii[c] : others.get(c);
+        }
     }
 }
@@ -0,0 +1,250 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.util;
+
+import org.jvnet.licensetool.file.CommentBlock;
+import org.jvnet.licensetool.file.ParsedFile;
+
+import static org.jvnet.licensetool.Tags.COPYRIGHT_BLOCK_TAG;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers, for the duration of a run, what CopyrightParser and the
+ * copyright template made of each distinct comment.  Most files carry the
+ * same license header, so each header text is only parsed and matched once.
+ * <p/>
+ * Comments are identified by their text.  CommentBlock keeps the text it
+ * renders, so looking a block up several times hashes it only once.
+ * Comments that cannot contain a copyright are not looked up or remembered.
+ * A copyright line whose years were not recognized is reported again for
+ * every file that carries the comment, as parsing it would have.
+ * Once MAX_HEADERS comments are remembered, the cache is emptied before the
+ * next one is added, so that a long-lived process such as the daemon does
+ * not grow without bound; the few common headers are soon cached again.
+ * The cache may be used by several threads at once.
+ */
+public class HeaderCache {
+    // Marks a Header whose comment has not been matched against the template yet
+    private static final int NOT_MATCHED = Integer.MIN_VALUE;
+
+    /**
+     * Number of distinct comments remembered at most.
+     */
+    public static final int MAX_HEADERS = 4096;
+
+    private final CompiledCopyrightTemplate template;
+    private final ConcurrentMap<String, Header> headers = new ConcurrentHashMap<String, Header>();
+    // parseCopyright, and mismatch or isSimilar, are counted apart, as a
+    // block is usually looked up once for each
+    private final AtomicLong parseLookups = new AtomicLong();
+    private final AtomicLong parseHits = new AtomicLong();
+    private final AtomicLong matchLookups = new AtomicLong();
+    private final AtomicLong matchHits = new AtomicLong();
+
+    // What is known about one distinct comment
+    private static final class Header {
+        // null until the comment has been parsed through the cache
+        volatile Parse parse;
+        volatile int mismatch = NOT_MATCHED;
+        // null until the comment has been compared to the expected text
+        volatile Boolean similar;
+    }
+
+    // What CopyrightParser made of one distinct comment
+    private static final class Parse {
+        // the comment has the copyright tags
+        final boolean copyright;
+        // null if no copyright line with a year was found
+        final CommentBlock.Copyright details;
+        // the copyright line whose years were not recognized, or null
+        final String unrecognizedYears;
+
+        Parse(final CommentBlock block, final String unrecognizedYears) {
+            copyright = block.hasTag(COPYRIGHT_BLOCK_TAG);
+            details = copy(block.getCopyright());
+            this.unrecognizedYears = unrecognizedYears;
+        }
+    }
+
+    public HeaderCache(CompiledCopyrightTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Same as CopyrightParser.parseCopyright(commentBlock, pfile), but
+     * reuses the result for comments that were seen before.
+     */
+    public void parseCopyright(CommentBlock commentBlock, ParsedFile pfile) {
+        final String comment = commentBlock.comment();
+        if (!mayHaveCopyright(comment)) {
+            return;
+        }
+        parseLookups.incrementAndGet();
+        final Header header = header(comment);
+        final Parse parse = header.parse;
+        if (parse == null) {
+            final String unrecognized = CopyrightParser.parse(commentBlock, pfile);
+            header.parse = new Parse(commentBlock, unrecognized);
+            return;
+        }
+        parseHits.incrementAndGet();
+        if (parse.unrecognizedYears != null) {
+            CopyrightParser.yearsNotRecognized(parse.unrecognizedYears, pfile);
+        }
+        if (parse.copyright) {
+            commentBlock.addTag(CopyrightParser.copyright_tag);
+            commentBlock.addTag(COPYRIGHT_BLOCK_TAG);
+        }
+        if (parse.details != null) {
+            commentBlock.setCopyright(copy(parse.details));
+        }
+    }
+
+    /**
+     * Same as template.mismatch(commentBlock.comment()), but reuses the
+     * result for comments that were seen before.
+     */
+    public int mismatch(CommentBlock commentBlock) {
+        final String comment = commentBlock.comment();
+        matchLookups.incrementAndGet();
+        final Header header = header(comment);
+        int mismatch = header.mismatch;
+        if (mismatch == NOT_MATCHED) {
+            mismatch = template.mismatch(comment);
+            header.mismatch = mismatch;
+        } else {
+            matchHits.incrementAndGet();
+        }
+        return mismatch;
+    }
+
+    /**
+     * Same as template.matches(commentBlock.comment()), but reuses the
+     * result for comments that were seen before.
+     */
+    public boolean matches(CommentBlock commentBlock) {
+        return mismatch(commentBlock) < 0;
+    }
+
+    /**
+     * Same as ToolUtil.areCommentsSimilar(expected, commentBlock.comment(),
+     * maxDistance), but reuses the result for comments that were seen
+     * before.  A cache must always be asked with the same distance, and
+     * with an expected text that depends only on the comment.
+     */
+    public boolean isSimilar(CommentBlock commentBlock, String expected, int maxDistance) {
+        final String comment = commentBlock.comment();
+        matchLookups.incrementAndGet();
+        final Header header = header(comment);
+        Boolean similar = header.similar;
+        if (similar == null) {
+            similar = ToolUtil.areCommentsSimilar(expected, comment, maxDistance);
+            header.similar = similar;
+        } else {
+            matchHits.incrementAndGet();
+        }
+        return similar;
+    }
+
+    // The header of comment, added if there is none yet.  The number of
+    // headers is kept bounded.
+    private Header header(String comment) {
+        final Header header = headers.get(comment);
+        if (header != null) {
+            return header;
+        }
+        if (headers.size() >= MAX_HEADERS) {
+            headers.clear();
+        }
+        final Header added = new Header();
+        final Header old = headers.putIfAbsent(comment, added);
+        return old != null ? old : added;
+    }
+
+    public long getParseLookups() {
+        return parseLookups.get();
+    }
+
+    public long getParseHits() {
+        return parseHits.get();
+    }
+
+    public long getMatchLookups() {
+        return matchLookups.get();
+    }
+
+    public long getMatchHits() {
+        return matchHits.get();
+    }
+
+    /**
+     * Return a one line summary of the cache use, for the end of a run.
+     */
+    public String summary() {
+        return String.format("Header cache: parse %s; match %s; %d distinct comments",
+                ratio(parseLookups.get(), parseHits.get()), ratio(matchLookups.get(), matchHits.get()),
+                headers.size());
+    }
+
+    private static String ratio(long lookups, long hits) {
+        return String.format("%d lookups, %d hits (%.1f%%)", lookups, hits,
+                lookups == 0 ? 0.0 : 100.0 * hits / lookups);
+    }
+
+    // Cheap test for the patterns CopyrightParser looks for first
+    private static boolean mayHaveCopyright(String comment) {
+        return comment.contains("opyright") || comment.contains("(c)") || comment.contains("(C)");
+    }
+
+    private static CommentBlock.Copyright copy(CommentBlock.Copyright copyright) {
+        if (copyright == null) {
+            return null;
+        }
+        final CommentBlock.Copyright result = new CommentBlock.Copyright();
+        result.setStartYear(copyright.getStartYear());
+        result.setEndYear(copyright.getEndYear());
+        result.setLicensor(copyright.getLicensor());
+        return result;
+    }
+}
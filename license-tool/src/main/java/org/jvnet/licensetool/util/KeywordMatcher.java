@@ -0,0 +1,203 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.jvnet.licensetool.util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds which of a fixed set of keywords occur in a text, in one pass over
+ * the text whatever the number of keywords (Aho-Corasick).  The keywords
+ * are compiled into a trie whose nodes also link to the node of their
+ * longest proper suffix that is in the trie, so that scanning never backs
+ * up in the text.  Matching is case sensitive, as in String.contains; an
+ * empty keyword occurs in every text.
+ * Instances are immutable and may be shared between threads.
+ */
+public class KeywordMatcher {
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+    private static final int[] NO_OUTPUTS = new int[0];
+
+    private final String[] keywords;
+    private final Node root = new Node();
+
+    private static final class Node {
+        // sorted, with the child for each label at the same index in next
+        char[] labels = NO_LABELS;
+        Node[] next = NO_NODES;
+        Node fail;
+        // indexes of the keywords that end here, including those that end at fail
+        int[] outputs = NO_OUTPUTS;
+
+        Node child(char c) {
+            final int i = Arrays.binarySearch(labels, c);
+            return i >= 0 ? next[i] : null;
+        }
+
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) {
+                return next[i];
+            }
+            i = -i - 1;
+            final Node node = new Node();
+            labels = insert(labels, i, c);
+            final Node[] n = new Node[next.length + 1];
+            System.arraycopy(next, 0, n, 0, i);
+            n[i] = node;
+            System.arraycopy(next, i, n, i + 1, next.length - i);
+            next = n;
+            return node;
+        }
+
+        private static char[] insert(char[] a, int i, char c) {
+            final char[] result = new char[a.length + 1];
+            System.arraycopy(a, 0, result, 0, i);
+            result[i] = c;
+            System.arraycopy(a, i, result, i + 1, a.length - i);
+            return result;
+        }
+    }
+
+    public KeywordMatcher(List<String> keywords) {
+        this.keywords = keywords.toArray(new String[keywords.size()]);
+        for (int k = 0; k < this.keywords.length; k++) {
+            Node node = root;
+            final String keyword = this.keywords[k];
+            for (int i = 0; i < keyword.length(); i++) {
+                node = node.addChild(keyword.charAt(i));
+            }
+            node.outputs = append(node.outputs, k);
+        }
+        linkSuffixes();
+    }
+
+    // Breadth first, so the fail node of a node is done before the node
+    private void linkSuffixes() {
+        final Queue<Node> queue = new ArrayDeque<Node>();
+        root.fail = root;
+        for (Node child : root.next) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final Node node = queue.remove();
+            node.outputs = merge(node.outputs, node.fail.outputs);
+            for (int i = 0; i < node.labels.length; i++) {
+                final char c = node.labels[i];
+                final Node child = node.next[i];
+                Node fail = node.fail;
+                while (fail != root && fail.child(c) == null) {
+                    fail = fail.fail;
+                }
+                final Node target = fail.child(c);
+                child.fail = target != null ? target : root;
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int[] append(int[] a, int value) {
+        final int[] result = Arrays.copyOf(a, a.length + 1);
+        result[a.length] = value;
+        return result;
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        final int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    public int size() {
+        return keywords.length;
+    }
+
+    public String getKeyword(int index) {
+        return keywords[index];
+    }
+
+    /**
+     * Return the indexes, in the list given to the constructor, of the
+     * keywords that occur in text.  Stops reading the text once every
+     * keyword has been found.
+     */
+    public BitSet findAll(CharSequence text) {
+        final BitSet found = new BitSet(keywords.length);
+        int count = record(root.outputs, found, 0);
+        Node node = root;
+        final int length = text.length();
+        for (int i = 0; i < length && count < keywords.length; i++) {
+            final char c = text.charAt(i);
+            Node next = node.child(c);
+            while (next == null && node != root) {
+                node = node.fail;
+                next = node.child(c);
+            }
+            node = next != null ? next : root;
+            if (node.outputs.length > 0) {
+                count = record(node.outputs, found, count);
+            }
+        }
+        return found;
+    }
+
+    // Set the bits of outputs, and return count plus the number that were new
+    private static int record(int[] outputs, BitSet found, int count) {
+        for (int k : outputs) {
+            if (!found.get(k)) {
+                found.set(k);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public String toString() {
+        return "KeywordMatcher" + Arrays.toString(keywords);
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.jvnet.licensetool.util;
+
+import org.jvnet.licensetool.file.FileWrapper;
+import org.jvnet.licensetool.file.PlainBlock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A set of known licenses, used to tell which of them a comment is.
+ * <p/>
+ * The catalog is loaded from a directory with one template file per
+ * license, in the format of the file given to the -copyright option; the
+ * license is named after the file, without its extension.  The text of
+ * every template and comment is reduced to the set of its word 3-grams
+ * (shingles), with years left out, and that set to a MinHash signature:
+ * the fraction of equal entries in two signatures estimates how much the
+ * two sets overlap.  Signatures are indexed by locality-sensitive hashing,
+ * so a comment is only compared with the templates that share at least
+ * one band of its signature, whatever the size of the catalog.  The
+ * candidates are ranked by estimated overlap and the best few are matched
+ * exactly against their template.
+ * <p/>
+ * A catalog is immutable once loaded, apart from its counts, and may be
+ * used by several threads at once.
+ */
+public class LicenseCatalog {
+    // Number of hash functions in a signature
+    private static final int HASHES = 128;
+
+    // Signature entries per band; HASHES / ROWS bands are indexed.  Two
+    // texts whose shingles overlap by s share a band with probability
+    // 1 - (1 - s^ROWS)^(HASHES / ROWS): about 1/2 for s = 0.42.
+    private static final int ROWS = 4;
+    private static final int BANDS = HASHES / ROWS;
+
+    // Number of words in a shingle
+    private static final int SHINGLE_WORDS = 3;
+
+    // Number of best candidates that are matched exactly
+    private static final int EXACT_CANDIDATES = 3;
+
+    // Least estimated overlap for a comment to be reported as a license it
+    // does not match exactly
+    private static final double MIN_SIMILARITY = 0.5;
+
+    // Seeds of the hash functions, fixed so signatures do not change between runs
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private final List<License> licenses;
+    // For each band, the licenses by the hash of their entries in the band
+    private final List<Map<Long, List<License>>> bands;
+    private final ConcurrentMap<String, AtomicLong> counts = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong unknown = new AtomicLong();
+
+    private static final class License {
+        final String name;
+        final CompiledCopyrightTemplate template;
+        final long[] signature;
+
+        License(String name, CompiledCopyrightTemplate template) {
+            this.name = name;
+            this.template = template;
+            this.signature = signature(template.getCopyrightText().contents());
+        }
+    }
+
+    /**
+     * What a comment was found to be.
+     */
+    public static final class Match {
+        private final String license;
+        private final boolean exact;
+        private final double similarity;
+
+        Match(String license, boolean exact, double similarity) {
+            this.license = license;
+            this.exact = exact;
+            this.similarity = similarity;
+        }
+
+        /**
+         * Return the name of the license.
+         */
+        public String getLicense() {
+            return license;
+        }
+
+        /**
+         * Return true if the comment matches the template of the license
+         * exactly, as a header is validated.
+         */
+        public boolean isExact() {
+            return exact;
+        }
+
+        /**
+         * Return the estimated fraction of shingles the comment and the
+         * template have in common.
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        public String toString() {
+            return exact ? license : String.format("%s (%.0f%% similar)", license, 100 * similarity);
+        }
+    }
+
+    private LicenseCatalog(List<License> licenses) {
+        this.licenses = licenses;
+        this.bands = new ArrayList<Map<Long, List<License>>>(BANDS);
+        for (int b = 0; b < BANDS; b++) {
+            Map<Long, List<License>> band = new HashMap<Long, List<License>>();
+            for (License license : licenses) {
+                Long key = bandKey(license.signature, b);
+                List<License> list = band.get(key);
+                if (list == null) {
+                    list = new ArrayList<License>(1);
+                    band.put(key, list);
+                }
+                list.add(license);
+            }
+            bands.add(band);
+        }
+    }
+
+    /**
+     * Load every file of dir as the template of a license.
+     */
+    public static LicenseCatalog load(File dir) throws IOException {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list license catalog directory " + dir);
+        }
+        Arrays.sort(files);
+        final List<License> licenses = new ArrayList<License>();
+        for (File file : files) {
+            if (!file.isFile() || file.isHidden()) {
+                continue;
+            }
+            final PlainBlock text = new PlainBlock(new FileWrapper(file));
+            licenses.add(new License(licenseName(file), new CompiledCopyrightTemplate(text)));
+        }
+        if (licenses.isEmpty()) {
+            throw new IOException("No license templates in " + dir);
+        }
+        return new LicenseCatalog(licenses);
+    }
+
+    private static String licenseName(File file) {
+        final String name = file.getName();
+        final int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Return the names of the licenses in the catalog.
+     */
+    public List<String> getLicenses() {
+        final List<String> names = new ArrayList<String>(licenses.size());
+        for (License license : licenses) {
+            names.add(license.name);
+        }
+        return names;
+    }
+
+    /**
+     * Return the license the comment is, or null if it is none of them.
+     * An exact match is preferred; otherwise the license whose template
+     * shares the most shingles with the comment is returned, if they share
+     * at least half of them.
+     */
+    public Match classify(String comment) {
+        final long[] signature = signature(comment);
+        final Map<License, Double> candidates = new LinkedHashMap<License, Double>();
+        for (int b = 0; b < BANDS; b++) {
+            final List<License> list = bands.get(b).get(bandKey(signature, b));
+            if (list != null) {
+                for (License license : list) {
+                    if (!candidates.containsKey(license)) {
+                        candidates.put(license, similarity(signature, license.signature));
+                    }
+                }
+            }
+        }
+        final List<Map.Entry<License, Double>> ranked =
+                new ArrayList<Map.Entry<License, Double>>(candidates.entrySet());
+        Collections.sort(ranked, new Comparator<Map.Entry<License, Double>>() {
+            public int compare(Map.Entry<License, Double> a, Map.Entry<License, Double> b) {
+                return b.getValue().compareTo(a.getValue());
+            }
+        });
+
+        Match match = null;
+        for (int i = 0; i < ranked.size() && i < EXACT_CANDIDATES; i++) {
+            final Map.Entry<License, Double> candidate = ranked.get(i);
+            if (candidate.getKey().template.matches(comment)) {
+                match = new Match(candidate.getKey().name, true, candidate.getValue());
+                break;
+            }
+        }
+        if (match == null && !ranked.isEmpty() && ranked.get(0).getValue() >= MIN_SIMILARITY) {
+            match = new Match(ranked.get(0).getKey().name, false, ranked.get(0).getValue());
+        }
+        count(match);
+        return match;
+    }
+
+    private void count(Match match) {
+        if (match == null) {
+            unknown.incrementAndGet();
+            return;
+        }
+        AtomicLong count = counts.get(match.getLicense());
+        if (count == null) {
+            final AtomicLong old = counts.putIfAbsent(match.getLicense(), count = new AtomicLong());
+            if (old != null) {
+                count = old;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Return the number of comments classified as each license so far, and
+     * of those that were none of them, for the end of a run.
+     */
+    public String summary() {
+        final StringBuilder sb = new StringBuilder("License catalog:");
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>(counts).entrySet()) {
+            sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue().get()).append(',');
+        }
+        sb.append(" unknown=").append(unknown.get());
+        return sb.toString();
+    }
+
+    /**
+     * Return the MinHash signature of the shingles of text.  Texts with
+     * fewer words than a shingle are taken as one shingle.
+     */
+    static long[] signature(CharSequence text) {
+        final long[] signature = new long[HASHES];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        final long[] words = new long[SHINGLE_WORDS];
+        int count = 0;
+        int i = 0;
+        final int length = text.length();
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            long h = 0;
+            boolean digits = true;
+            final int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                final char c = Character.toLowerCase(text.charAt(i));
+                digits &= Character.isDigit(c);
+                h = 31 * h + c;
+                i++;
+            }
+            // years, and the YYYY that stands for them, vary between headers;
+            // other numbers, such as versions, tell licenses apart
+            if (i - start == 4 && (digits || h == YYYY_HASH)) {
+                continue;
+            }
+            System.arraycopy(words, 1, words, 0, SHINGLE_WORDS - 1);
+            words[SHINGLE_WORDS - 1] = h;
+            if (++count >= SHINGLE_WORDS) {
+                add(signature, shingle(words));
+            }
+        }
+        if (count > 0 && count < SHINGLE_WORDS) {
+            add(signature, shingle(words));
+        }
+        return signature;
+    }
+
+    private static final long YYYY_HASH = ((31L * 'y' + 'y') * 31 + 'y') * 31 + 'y';
+
+    private static long shingle(long[] words) {
+        long h = 0;
+        for (long word : words) {
+            h = mix(h ^ word);
+        }
+        return h;
+    }
+
+    private static void add(long[] signature, long shingle) {
+        for (int k = 0; k < HASHES; k++) {
+            final long h = mix(shingle ^ SEEDS[k]);
+            if (h < signature[k]) {
+                signature[k] = h;
+            }
+        }
+    }
+
+    private static long bandKey(long[] signature, int band) {
+        long h = band;
+        for (int r = band * ROWS; r < (band + 1) * ROWS; r++) {
+            h = mix(h ^ signature[r]);
+        }
+        return h;
+    }
+
+    private static double similarity(long[] a, long[] b) {
+        int same = 0;
+        for (int k = 0; k < HASHES; k++) {
+            if (a[k] == b[k]) {
+                same++;
+            }
+        }
+        return (double) same / HASHES;
+    }
+
+    // The finalizer of SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.util;
+
+/**
+ * Iterates over the lines of a CharSequence without copying them.
+ * <p/>
+ * Lines are split exactly as ToolUtil.splitToLines always did: every line
+ * keeps its terminator (\n, \r\n, \r, or the Unicode next line, line
+ * separator or paragraph separator character), the last line has no
+ * terminator if the data does not end with one, there is no empty line
+ * after a final terminator, and empty data is a single empty line.
+ * <p/>
+ * Typical use:
+ * <pre>
+ *     LineIterator lines = new LineIterator(data);
+ *     while (lines.next()) {
+ *         ... lines.start(), lines.end(), lines.line() ...
+ *     }
+ * </pre>
+ */
+public class LineIterator {
+    private final CharSequence data;
+    private int start = -1;
+    private int end = 0;
+
+    public LineIterator(CharSequence data) {
+        this.data = data;
+    }
+
+    /**
+     * Move to the next line.  Returns false if there are no more lines.
+     */
+    public boolean next() {
+        final int length = data.length();
+        if (end >= length) {
+            if (start < 0) {
+                // empty data is one empty line
+                start = 0;
+                return true;
+            }
+            return false;
+        }
+        start = end;
+        end = lineEnd(start, length);
+        return true;
+    }
+
+    private int lineEnd(int from, int length) {
+        for (int i = from; i < length; i++) {
+            final char ch = data.charAt(i);
+            if (ch == '\r') {
+                return (i + 1 < length && data.charAt(i + 1) == '\n') ? i + 2 : i + 1;
+            }
+            if (isLineTerminator(ch)) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    // '\r' is handled separately, as it may be followed by '\n'
+    private static boolean isLineTerminator(char ch) {
+        return ch == '\n' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+    }
+
+    /**
+     * Offset of the first character of the current line.
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Offset just after the current line, including its terminator.
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Offset just after the current line, without its terminator.
+     */
+    public int contentEnd() {
+        int index = end;
+        if (index > start && data.charAt(index - 1) == '\n') {
+            index--;
+            if (index > start && data.charAt(index - 1) == '\r')
+                index--;
+        } else if (index > start && (data.charAt(index - 1) == '\r' || isLineTerminator(data.charAt(index - 1)))) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * The current line, including its terminator, as a view of the data.
+     */
+    public CharSequence line() {
+        return data.subSequence(start, end);
+    }
+
+    /**
+     * The current line, including its terminator, as a String.
+     */
+    public String lineAsString() {
+        return data.subSequence(start, end).toString();
+    }
+
+    /**
+     * True if the current line starts with prefix.
+     */
+    public boolean startsWith(String prefix) {
+        if (end - start < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data.charAt(start + i) != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * True if the current line has nothing but white space, in the sense
+     * of String.trim.
+     */
+    public boolean isBlank() {
+        for (int i = start; i < end; i++) {
+            if (data.charAt(i) > ' ')
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts and times the phases of a run.  Metrics are off unless enable()
+ * is called; until then start() and end() only read one static field.
+ * Typical use:
+ * <pre>
+ *     long start = Metrics.start();
+ *     ... work ...
+ *     Metrics.end(Metrics.Phase.PARSE, start);
+ * </pre>
+ * Phases may nest: the time spent reading a file is also part of the time
+ * spent parsing it.  Latencies are kept in histograms with one bucket per
+ * power of two nanoseconds, so percentiles are upper bounds within a
+ * factor of two.  All methods may be called from several threads at once.
+ */
+public final class Metrics {
+    public enum Phase {
+        WALK("walk"),
+        RECOGNIZE("recognize"),
+        READ("read"),
+        PARSE("parse"),
+        COPYRIGHT_PARSE("copyright parse"),
+        TEMPLATE_MATCH("template match"),
+        CLASSIFY("classify"),
+        VCS("vcs"),
+        WRITE("write");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final int BUCKETS = 64;
+
+    private static volatile Metrics current;
+
+    private final PhaseStats[] phases = new PhaseStats[Phase.values().length];
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> filesPerParser = new ConcurrentHashMap<String, AtomicLong>();
+
+    private static final class PhaseStats {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong max = new AtomicLong();
+        // buckets[i] counts the times t with 2^i <= t < 2^(i+1) nanoseconds
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            total.addAndGet(nanos);
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+            long old;
+            while (nanos > (old = max.get()) && !max.compareAndSet(old, nanos)) {
+                // retry
+            }
+        }
+
+        // Upper bound of the bucket that holds the given fraction of the
+        // counts, but no more than the largest time recorded
+        long percentile(double fraction) {
+            final long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            final long rank = (long) Math.ceil(fraction * n);
+            final long largest = max.get();
+            long seen = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min((1L << (i + 1)) - 1, largest);
+                }
+            }
+            return largest;
+        }
+    }
+
+    private Metrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new PhaseStats();
+        }
+    }
+
+    /**
+     * Start collecting metrics into a new, empty Metrics, which is returned.
+     */
+    public static Metrics enable() {
+        final Metrics metrics = new Metrics();
+        current = metrics;
+        return metrics;
+    }
+
+    /**
+     * Stop collecting metrics.
+     */
+    public static void disable() {
+        current = null;
+    }
+
+    public static boolean isEnabled() {
+        return current != null;
+    }
+
+    /**
+     * Return the start time to pass to end, or 0 if metrics are disabled.
+     */
+    public static long start() {
+        return current != null ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Record the time since start, as returned by start(), for phase.
+     */
+    public static void end(Phase phase, long start) {
+        final Metrics metrics = current;
+        if (metrics != null && start != 0L) {
+            metrics.phases[phase.ordinal()].record(Math.max(0L, System.nanoTime() - start));
+        }
+    }
+
+    public static void addBytesRead(long bytes) {
+        final Metrics metrics = current;
+        if (metrics != null) {
+            metrics.bytesRead.addAndGet(bytes);
+        }
+    }
+
+    public static void addBytesWritten(long bytes) {
+        final Metrics metrics = current;
+        if (metrics != null) {
+            metrics.bytesWritten.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Count one file handled by the parser with the given name.
+     */
+    public static void countFile(String parser) {
+        final Metrics metrics = current;
+        if (metrics != null) {
+            AtomicLong count = metrics.filesPerParser.get(parser);
+            if (count == null) {
+                final AtomicLong newCount = new AtomicLong();
+                count = metrics.filesPerParser.putIfAbsent(parser, newCount);
+                if (count == null) {
+                    count = newCount;
+                }
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Return the metrics as a table, for the end of a run.
+     */
+    public String table() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-16s %9s %11s %10s %10s %10s %10s %10s%n",
+                "phase", "count", "total ms", "mean us", "p50 us", "p90 us", "p99 us", "max us"));
+        for (Phase phase : Phase.values()) {
+            final PhaseStats stats = phases[phase.ordinal()];
+            final long count = stats.count.get();
+            final long total = stats.total.get();
+            sb.append(String.format("%-16s %9d %11.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    phase.getLabel(), count, total / 1e6, count == 0 ? 0.0 : total / 1e3 / count,
+                    stats.percentile(0.5) / 1e3, stats.percentile(0.9) / 1e3,
+                    stats.percentile(0.99) / 1e3, stats.max.get() / 1e3));
+        }
+        sb.append(String.format("bytes read: %d, bytes written: %d%n", bytesRead.get(), bytesWritten.get()));
+        sb.append("files per parser:");
+        for (Map.Entry<String, Long> entry : sortedFilesPerParser().entrySet()) {
+            sb.append(String.format("%n    %-40s %9d", entry.getKey(), entry.getValue()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write the metrics to file as JSON.  Times are in nanoseconds; each
+     * histogram bucket is given as [lowest nanoseconds, count].
+     */
+    public void writeJson(File file) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.write("{\n  \"phases\": {");
+            boolean firstPhase = true;
+            for (Phase phase : Phase.values()) {
+                final PhaseStats stats = phases[phase.ordinal()];
+                writer.write(firstPhase ? "\n" : ",\n");
+                firstPhase = false;
+                writer.write("    " + quote(phase.getLabel()) + ": {"
+                        + "\"count\": " + stats.count.get()
+                        + ", \"totalNanos\": " + stats.total.get()
+                        + ", \"maxNanos\": " + stats.max.get()
+                        + ", \"p50Nanos\": " + stats.percentile(0.5)
+                        + ", \"p90Nanos\": " + stats.percentile(0.9)
+                        + ", \"p99Nanos\": " + stats.percentile(0.99)
+                        + ", \"histogram\": [");
+                boolean firstBucket = true;
+                for (int i = 0; i < BUCKETS; i++) {
+                    final long count = stats.buckets.get(i);
+                    if (count > 0) {
+                        writer.write((firstBucket ? "[" : ", [") + (1L << i) + ", " + count + "]");
+                        firstBucket = false;
+                    }
+                }
+                writer.write("]}");
+            }
+            writer.write("\n  },\n");
+            writer.write("  \"bytesRead\": " + bytesRead.get() + ",\n");
+            writer.write("  \"bytesWritten\": " + bytesWritten.get() + ",\n");
+            writer.write("  \"filesPerParser\": {");
+            boolean firstParser = true;
+            for (Map.Entry<String, Long> entry : sortedFilesPerParser().entrySet()) {
+                writer.write((firstParser ? "\n" : ",\n") + "    " + quote(entry.getKey()) + ": " + entry.getValue());
+                firstParser = false;
+            }
+            writer.write("\n  }\n}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private Map<String, Long> sortedFilesPerParser() {
+        final Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : filesPerParser.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    private static String quote(String str) {
+        final StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
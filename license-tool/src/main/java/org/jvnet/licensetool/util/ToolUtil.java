@@ -40,6 +40,12 @@
 
 package org.jvnet.licensetool.util;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.regex.Pattern;
@@ -50,67 +56,108 @@ import java.util.regex.Matcher;
  * @author Rama Pulavarthi
  */
 public class ToolUtil {
+    /**
+     * Split data into lines, each with its terminator.  LineIterator does
+     * the same without copying the lines.
+     */
     public static List<String> splitToLines(String data) {
         List<String> lines = new ArrayList<String>();
-        String patternStr = "(.+?)^";
-        Pattern pattern = Pattern.compile(patternStr, Pattern.MULTILINE | Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(data);
-        int index = 0;// to store last match
-        while (matcher.find()) {
-            lines.add(matcher.group());
-            index = matcher.end();
-
+        LineIterator iterator = new LineIterator(data);
+        while (iterator.next()) {
+            lines.add(data.substring(iterator.start(), iterator.end()));
         }
-        //get the rest
-        lines.add(data.substring(index));
         return lines;
     }
 
+    /**
+     * Same as String.indexOf(String, int), for any CharSequence.
+     */
+    public static int indexOf(CharSequence data, String str, int fromIndex) {
+        if (data instanceof String) {
+            return ((String) data).indexOf(str, fromIndex);
+        }
+        if (str.length() == 0) {
+            return Math.min(Math.max(fromIndex, 0), data.length());
+        }
+        final char first = str.charAt(0);
+        final int last = data.length() - str.length();
+        for (int i = Math.max(fromIndex, 0); i <= last; i++) {
+            if (data.charAt(i) != first)
+                continue;
+            int j = 1;
+            while (j < str.length() && data.charAt(i + j) == str.charAt(j))
+                j++;
+            if (j == str.length())
+                return i;
+        }
+        return -1;
+    }
+
     public static String sniffLineSeparator(String data) {
-        List<String> lines = splitToLines(data);
-        String fline = lines.get(0);
-        int flineLength = fline.length();
+        LineIterator lines = new LineIterator(data);
+        lines.next();
+        int flineEnd = lines.end();
+        int flineLength = flineEnd - lines.start();
         if (flineLength > 1) {
-            if ((fline.charAt(flineLength - 2) == '\r') && (fline.charAt(flineLength - 1) == '\n')) {
+            if ((data.charAt(flineEnd - 2) == '\r') && (data.charAt(flineEnd - 1) == '\n')) {
                 return "\r\n";
             }
         }
-        if(fline.charAt(flineLength-1)=='\n'){
+        if(data.charAt(flineEnd-1)=='\n'){
                 return "\n";
-        } else if(fline.charAt(flineLength-1)=='\r'){
+        } else if(data.charAt(flineEnd-1)=='\r'){
                 return "\r";
         }
         return null;
     }
 
+    /**
+     * Return the first line of inputStr, with line_separator as its terminator.
+     */
     public static String covertLineBreak(String inputStr, String line_separator) {
-        String patternStr = "(.*)$";
-        Pattern pattern = Pattern.compile(patternStr, Pattern.MULTILINE);
-
-        Matcher matcher = pattern.matcher(inputStr);
-        if (matcher.find()) {
-            return matcher.group() + line_separator;
-        } else {
-            return inputStr;
-        }
+        LineIterator lines = new LineIterator(inputStr);
+        lines.next();
+        return inputStr.substring(0, lines.contentEnd()) + line_separator;
     }
 
     public static boolean areCommentsEqual(String exp, String got) {
-        List<String> expLines = splitToLines(exp);
-        List<String> gotLines = splitToLines(got);
-        if(expLines.size() != gotLines.size())
-            return false;
-        for(int i=0;i<expLines.size();i++) {
-            if(!(expLines.get(i).trim().equals(gotLines.get(i).trim())))
+        LineIterator expLines = new LineIterator(exp);
+        LineIterator gotLines = new LineIterator(got);
+        while (expLines.next()) {
+            if (!gotLines.next())
+                return false;
+            if (!trimmedRegionsEqual(exp, expLines.start(), expLines.end(),
+                    got, gotLines.start(), gotLines.end()))
                 return false;
         }
-        return true;
+        return !gotLines.next();
+    }
+
+    // Same as a.substring(aStart, aEnd).trim().equals(b.substring(bStart, bEnd).trim())
+    private static boolean trimmedRegionsEqual(String a, int aStart, int aEnd, String b, int bStart, int bEnd) {
+        while (aStart < aEnd && a.charAt(aStart) <= ' ')
+            aStart++;
+        while (aEnd > aStart && a.charAt(aEnd - 1) <= ' ')
+            aEnd--;
+        while (bStart < bEnd && b.charAt(bStart) <= ' ')
+            bStart++;
+        while (bEnd > bStart && b.charAt(bEnd - 1) <= ' ')
+            bEnd--;
+        return aEnd - aStart == bEnd - bStart && a.regionMatches(aStart, b, bStart, aEnd - aStart);
     }
 
     public static boolean areCommentsSimilar(String exp, String got) {
+        return areCommentsSimilar(exp, got, 10);
+    }
+
+    /**
+     * Return true if got is at most maxDistance edits away from exp, once
+     * line breaks are normalized.
+     */
+    public static boolean areCommentsSimilar(String exp, String got, int maxDistance) {
         exp = normalizeString(exp);
         got = normalizeString(got);
-        if(EditDistance.editDistance(exp,got) <=  10) {
+        if(EditDistance.editDistance(exp, got, maxDistance) <= maxDistance) {
             return true;
         }
 //        System.out.println("Expected: " + exp);
@@ -132,11 +179,50 @@ public class ToolUtil {
     }
 
 
-    private static String normalizeString(String s) {
+    static String normalizeString(String s) {
         s = s.replace("\r\n","\n");
         s = s.replace("\r","\n");
         return s;
 
     }
 
+    /**
+     * Return a new SHA-1 MessageDigest.
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Return the SHA-1 digest of the contents of file as a hex string.
+     */
+    public static String digest(File file) throws IOException {
+        final MessageDigest md = newDigest();
+        final InputStream is = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[64 * 1024];
+            int count;
+            while ((count = is.read(buffer)) > 0) {
+                md.update(buffer, 0, count);
+            }
+        } finally {
+            is.close();
+        }
+        return toHex(md.digest());
+    }
+
+    public static String toHex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
 }
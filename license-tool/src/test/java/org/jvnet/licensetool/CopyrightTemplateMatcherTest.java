@@ -0,0 +1,208 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.file.CommentBlock;
+import org.jvnet.licensetool.file.FileParser;
+import org.jvnet.licensetool.file.FileRecognizer;
+import org.jvnet.licensetool.file.FileWrapper;
+import org.jvnet.licensetool.file.ParsedFile;
+import org.jvnet.licensetool.file.PlainBlock;
+import org.jvnet.licensetool.util.CompiledCopyrightTemplate;
+import org.jvnet.licensetool.util.ToolUtil;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Differential test: CompiledCopyrightTemplate must give the same verdict
+ * as the regular expression built by LicenseTool.makeCopyrightPatternBlock.
+ */
+public class CopyrightTemplateMatcherTest
+    extends TestCase
+{
+    private static final String[] YEARS = {
+        "2010", "1997-2010", "1997, 2010,", "1997, 2010, 2011", "1997, 2010",
+        "1997,2010,", "97", "1997-10", "19977", "1997--2010", "1997 2010", "abcd", "", "2010-"
+    };
+
+    public CopyrightTemplateMatcherTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( CopyrightTemplateMatcherTest.class );
+    }
+
+    /**
+     * Every comment block of the test sources, plus the same comments with
+     * CRLF line breaks.
+     */
+    public void testCorpus() throws Exception
+    {
+        PlainBlock copyrightText = getCopyrightText();
+        FileRecognizer recognizer = new RecognizerFactory().getDefaultRecognizer();
+        List<File> files = new ArrayList<File>();
+        collectFiles(new File(getRoot(), "src/test/resources/testsrc"), files);
+        assertFalse(files.isEmpty());
+        int comments = 0;
+        for (File file : files) {
+            FileWrapper fw = new FileWrapper(file);
+            try {
+                FileParser parser = recognizer.getParser(fw);
+                if (parser == null)
+                    continue;
+                ParsedFile pfile = parser.parseFile(fw);
+                if (pfile == null)
+                    continue;
+                for (CommentBlock block : pfile.getComments()) {
+                    String comment = block.comment();
+                    assertAgree(copyrightText, comment);
+                    assertAgree(copyrightText, comment.replace("\n", "\r\n"));
+                    comments++;
+                }
+            } finally {
+                fw.close();
+            }
+        }
+        assertTrue(comments > 0);
+    }
+
+    /**
+     * The template filled in with valid and invalid years, for both the
+     * "YYYY, " and the "YYYY " forms of the template.
+     */
+    public void testYearVariants() throws Exception
+    {
+        String listTemplate = getCopyrightText().contents();
+        assertTrue(listTemplate.contains("YYYY, "));
+        String rangeTemplate = listTemplate.replace("YYYY, ", "YYYY ");
+        String mixedTemplate = listTemplate.replace("YYYY, ", "YYYY, YYYY ");
+        for (String template : new String[]{listTemplate, rangeTemplate, mixedTemplate}) {
+            PlainBlock templateBlock = new PlainBlock(template);
+            for (String year : YEARS) {
+                String comment = template.replace("YYYY", year);
+                assertAgree(templateBlock, comment);
+                assertAgree(templateBlock, comment.replace("\n", "\r\n"));
+                assertAgree(templateBlock, comment.substring(0, comment.length() - 1));
+                assertAgree(templateBlock, comment + " ");
+                assertAgree(templateBlock, comment.replaceFirst("Sun", "Oracle"));
+            }
+        }
+        assertTrue(new CompiledCopyrightTemplate(new PlainBlock(listTemplate))
+                .matches(listTemplate.replace("YYYY", "1997, 2010")));
+        assertTrue(new CompiledCopyrightTemplate(new PlainBlock(rangeTemplate))
+                .matches(rangeTemplate.replace("YYYY", "1997-2010")));
+    }
+
+    /**
+     * A single changed character anywhere in a matching comment.
+     */
+    public void testMutations() throws Exception
+    {
+        PlainBlock copyrightText = getCopyrightText();
+        String comment = copyrightText.contents().replace("YYYY", "1997, 2010");
+        CompiledCopyrightTemplate template = new CompiledCopyrightTemplate(copyrightText);
+        assertEquals(-1, template.mismatch(comment));
+        for (int i = 0; i < comment.length(); i++) {
+            String mutated = comment.substring(0, i) + '#' + comment.substring(i + 1);
+            assertAgree(copyrightText, mutated);
+            if (comment.charAt(i) != '\r' && comment.charAt(i) != '#') {
+                assertTrue(template.mismatch(mutated) >= 0);
+            }
+        }
+    }
+
+    public void testMismatchOffset()
+    {
+        CompiledCopyrightTemplate template = new CompiledCopyrightTemplate(
+                new PlainBlock("Copyright YYYY, Sun\n"));
+        assertEquals(-1, template.mismatch("Copyright 1997, 2010, Sun\n"));
+        assertEquals(0, template.mismatch("copyright 1997, Sun\n"));
+        assertEquals(12, template.mismatch("Copyright 19x7, Sun\n"));
+        assertEquals(16, template.mismatch("Copyright 1997, Oracle\n"));
+        assertEquals(20, template.mismatch("Copyright 1997, Sun\n!"));
+        assertEquals(14, template.mismatch("Copyright 1997"));
+    }
+
+    private void assertAgree(PlainBlock copyrightText, String comment)
+    {
+        boolean expected = ToolUtil.doesCopyrightMatch(
+                LicenseTool.makeCopyrightPatternBlock(copyrightText).contents(), comment);
+        CompiledCopyrightTemplate template = new CompiledCopyrightTemplate(copyrightText);
+        assertEquals(comment, expected, template.matches(comment));
+        assertEquals(comment, expected, template.mismatch(comment) < 0);
+    }
+
+    private PlainBlock getCopyrightText() throws Exception
+    {
+        return new PlainBlock(new FileWrapper(new File(getRoot(), "src/test/resources/copyright/copyright.txt")));
+    }
+
+    private static void collectFiles(File file, List<File> files)
+    {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children)
+                    collectFiles(child, files);
+            }
+        } else {
+            files.add(file);
+        }
+    }
+
+    private File getRoot() {
+        String classnameAsResource  = this.getClass().getName().replace('.', '/') + ".class";
+        URL res = getClass().getClassLoader().getResource(classnameAsResource);
+        File f = new File(res.getFile());
+        while(!new File(f,"pom.xml").exists())
+            f = f.getParentFile();
+        return f;
+    }
+}
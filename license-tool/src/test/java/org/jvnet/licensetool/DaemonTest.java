@@ -0,0 +1,266 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.argparser.ArgParser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * The client/daemon protocol: exit status, empty requests, paths the daemon
+ * must not validate, and a daemon that cannot be reached.
+ */
+public class DaemonTest
+    extends TestCase
+{
+    private File root;
+    private Daemon daemon;
+    private Thread thread;
+    private int port;
+
+    public DaemonTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( DaemonTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        root = Files.createTempDirectory("daemontest").toFile().getCanonicalFile();
+        write(new File(root, "NoCopyright.java"), "/**\n * No copyright here.\n */\npublic class NoCopyright {\n}\n");
+        write(new File(root, "skipped/Skipped.java"), "public class Skipped {\n}\n");
+
+        ArgParser<LicenseTool.Arguments> ap = new ArgParser<LicenseTool.Arguments>(LicenseTool.Arguments.class);
+        LicenseTool.Arguments args = ap.parse(new String[]{
+                "-daemon", "true",
+                "-dryrun", "false",
+                "-roots", root.getPath(),
+                "-skipdirs", "skipped",
+                "-copyright", new File(getRoot(), "src/test/resources/copyright/copyright.txt").getPath()});
+        RunConfig config = new RunConfig(args);
+        Scanner scanner = new Scanner(config, config.getRoots());
+        for (String str : config.getSkipdirs())
+            scanner.addDirectoryToSkip(str);
+        daemon = new Daemon(scanner, new RecognizerFactory().getDefaultRecognizer(),
+                new ActionFactory(null).getValidateCopyrightAction(config, null), null, new SimpleFormatter());
+        port = freePort();
+        thread = new Thread() {
+            public void run() {
+                try {
+                    daemon.serve(port);
+                } catch (IOException exc) {
+                    exc.printStackTrace();
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        // an empty request, repeated until the daemon listens
+        int status = 2;
+        for (int ctr = 0; ctr < 100 && status == 2; ctr++) {
+            Thread.sleep(50);
+            status = Daemon.connect(port, Collections.<String>emptyList(), new PrintStream(new ByteArrayOutputStream()));
+        }
+        assertEquals(0, status);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        daemon.stop();
+        thread.join(5000);
+        delete(root);
+    }
+
+    public void testEmptyRequest()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, Daemon.connect(port, Collections.<String>emptyList(), new PrintStream(out)));
+        assertEquals("", out.toString());
+    }
+
+    public void testValidationError()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, Daemon.connect(port, Arrays.asList(new File(root, "NoCopyright.java").getPath()),
+                new PrintStream(out)));
+        assertTrue(out.toString(), out.toString().contains("No Sun/Oracle Copyright header"));
+    }
+
+    public void testPathOutsideRoots() throws Exception
+    {
+        File outside = File.createTempFile("Outside", ".java");
+        try {
+            write(outside, "public class Outside {\n}\n");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(1, Daemon.connect(port, Arrays.asList(outside.getPath()), new PrintStream(out)));
+            assertTrue(out.toString(), out.toString().contains("Not validating"));
+            assertFalse(out.toString(), out.toString().contains("No Sun/Oracle Copyright header"));
+        } finally {
+            outside.delete();
+        }
+    }
+
+    public void testSkippedDirectory()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, Daemon.connect(port, Arrays.asList(new File(root, "skipped/Skipped.java").getPath()),
+                new PrintStream(out)));
+        assertTrue(out.toString(), out.toString().contains("Not validating"));
+        assertFalse(out.toString(), out.toString().contains("No Sun/Oracle Copyright header"));
+    }
+
+    public void testUnfinishedRequest() throws Exception
+    {
+        daemon.setRequestTimeout(200);
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            // a path, but never the empty line that ends the request
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+            writer.write(new File(root, "NoCopyright.java").getPath() + "\n");
+            writer.flush();
+            socket.setSoTimeout(10000);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            assertTrue(in.readLine().startsWith("ERROR:"));
+            assertEquals("EXIT 2", in.readLine());
+        } finally {
+            socket.close();
+        }
+        // the daemon goes on serving
+        daemon.setRequestTimeout(Daemon.DEFAULT_REQUEST_TIMEOUT);
+        assertEquals(1, Daemon.connect(port, Arrays.asList(new File(root, "NoCopyright.java").getPath()),
+                new PrintStream(new ByteArrayOutputStream())));
+    }
+
+    public void testMetricsRejected() throws Exception
+    {
+        final File metrics = new File(root, "metrics.json");
+        ArgParser<LicenseTool.Arguments> ap = new ArgParser<LicenseTool.Arguments>(LicenseTool.Arguments.class);
+        final LicenseTool.Arguments args = ap.parse(new String[]{
+                "-daemon", "true",
+                "-dryrun", "false",
+                "-port", Integer.toString(freePort()),
+                "-metrics", metrics.getPath(),
+                "-roots", root.getPath(),
+                "-copyright", new File(getRoot(), "src/test/resources/copyright/copyright.txt").getPath()});
+        Thread process = new Thread() {
+            public void run() {
+                LicenseTool.process(args);
+            }
+        };
+        process.setDaemon(true);
+        process.start();
+        process.join(10000);
+        assertFalse(process.isAlive());
+        assertFalse(metrics.exists());
+    }
+
+    public void testUnreachable() throws Exception
+    {
+        daemon.stop();
+        thread.join(5000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, Daemon.connect(port, Collections.<String>emptyList(), new PrintStream(out)));
+        assertTrue(out.toString(), out.toString().startsWith("ERROR:"));
+    }
+
+    private static int freePort() throws IOException
+    {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static void write(File file, String text) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+
+    private File getRoot() {
+        String classnameAsResource  = this.getClass().getName().replace('.', '/') + ".class";
+        URL res = getClass().getClassLoader().getResource(classnameAsResource);
+        File f = new File(res.getFile());
+        while(!new File(f,"pom.xml").exists())
+            f = f.getParentFile();
+        return f;
+    }
+}
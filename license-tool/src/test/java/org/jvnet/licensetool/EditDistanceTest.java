@@ -0,0 +1,194 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.util.EditDistance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Differential test: EditDistance must give the same distances as the
+ * plain dynamic programming table it replaced, bounded or not.
+ */
+public class EditDistanceTest
+    extends TestCase
+{
+    public EditDistanceTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( EditDistanceTest.class );
+    }
+
+    public void testFixedStrings()
+    {
+        assertDistance("", "");
+        assertDistance("", "abc");
+        assertDistance("kitten", "sitting");
+        assertDistance("flaw", "lawn");
+        assertDistance("Copyright 1997-2010 Sun", "Copyright 1997, 2010, Oracle");
+        assertEquals(3, EditDistance.editDistance("kitten", "sitting"));
+        assertEquals(2, EditDistance.editDistance("kitten", "sitting", 1));
+    }
+
+    /**
+     * Unrelated random strings, short and across the 64 character word size.
+     */
+    public void testRandomStrings()
+    {
+        Random random = new Random(42);
+        for (int ctr = 0; ctr < 2000; ctr++) {
+            int maxLength = ctr % 2 == 0 ? 20 : 200;
+            String alphabet = ctr % 3 == 0 ? "ab" : "abcdefghij \n";
+            assertDistance(randomString(random, alphabet, random.nextInt(maxLength)),
+                    randomString(random, alphabet, random.nextInt(maxLength)));
+        }
+    }
+
+    /**
+     * Strings a few edits apart, where the bounds and the band matter.
+     */
+    public void testNearStrings()
+    {
+        Random random = new Random(2010);
+        for (int ctr = 0; ctr < 2000; ctr++) {
+            String a = randomString(random, "abcdefghij \n", random.nextInt(300));
+            assertDistance(a, mutate(random, a, random.nextInt(12)));
+        }
+    }
+
+    public void testFindNearest()
+    {
+        Random random = new Random(7);
+        for (int ctr = 0; ctr < 200; ctr++) {
+            String key = randomString(random, "abcd", random.nextInt(80));
+            List<String> group = new ArrayList<String>();
+            int size = random.nextInt(10);
+            for (int i = 0; i < size; i++) {
+                group.add(mutate(random, key, random.nextInt(20)));
+            }
+            assertEquals(key + " " + group, findNearest(key, group), EditDistance.findNearest(key, group));
+        }
+    }
+
+    private static void assertDistance(String a, String b)
+    {
+        int expected = distance(a, b);
+        String message = "\"" + a + "\" / \"" + b + "\"";
+        assertEquals(message, expected, EditDistance.editDistance(a, b));
+        assertEquals(message, expected, EditDistance.editDistance(b, a));
+        for (int max : new int[]{0, 1, 2, 3, 5, 10, 33, 64, expected - 1, expected, expected + 1}) {
+            if (max < 0)
+                continue;
+            assertEquals(message + " max " + max, expected <= max ? expected : max + 1,
+                    EditDistance.editDistance(a, b, max));
+        }
+    }
+
+    // The O(nm) table EditDistance used before
+    private static int distance(String a, String b)
+    {
+        int[] cost = new int[a.length() + 1];
+        int[] back = new int[a.length() + 1];
+        for (int i = 0; i <= a.length(); i++)
+            cost[i] = i;
+        for (int j = 0; j < b.length(); j++) {
+            int[] t = cost;
+            cost = back;
+            back = t;
+            cost[0] = j + 1;
+            for (int i = 0; i < a.length(); i++) {
+                int match = (a.charAt(i) == b.charAt(j)) ? 0 : 1;
+                cost[i + 1] = Math.min(back[i] + match, Math.min(cost[i] + 1, back[i + 1] + 1));
+            }
+        }
+        return cost[a.length()];
+    }
+
+    // The first string of group with the smallest distance to key, or null
+    private static String findNearest(String key, List<String> group)
+    {
+        int c = Integer.MAX_VALUE;
+        String r = null;
+        for (String s : group) {
+            int ed = distance(key, s);
+            if (c > ed) {
+                c = ed;
+                r = s;
+            }
+        }
+        return r;
+    }
+
+    private static String randomString(Random random, String alphabet, int length)
+    {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    // Apply count random insertions, deletions and substitutions to s
+    private static String mutate(Random random, String s, int count)
+    {
+        StringBuilder sb = new StringBuilder(s);
+        for (int ctr = 0; ctr < count; ctr++) {
+            int op = random.nextInt(3);
+            if (op == 0 || sb.length() == 0) {
+                sb.insert(random.nextInt(sb.length() + 1), (char) ('a' + random.nextInt(10)));
+            } else if (op == 1) {
+                sb.deleteCharAt(random.nextInt(sb.length()));
+            } else {
+                sb.setCharAt(random.nextInt(sb.length()), (char) ('a' + random.nextInt(10)));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.argparser.ArgParser;
+import org.jvnet.licensetool.file.FileWrapper;
+import org.jvnet.licensetool.file.PlainBlock;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Validation with the fuzzy option: the years of a header do not count
+ * against the edit distance, only the text around them does.
+ */
+public class FuzzyValidationTest
+    extends TestCase
+{
+    private static final String[][] TYPOS = {
+        {"Development", "Developmnt"},
+        {"the specific", "the specfic"},
+        {"language governing", "languag governing"},
+        {"accompanied", "acompanied"},
+        {"a copy of", "a cpy of"},
+    };
+
+    private File root;
+    private String template;
+
+    public FuzzyValidationTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( FuzzyValidationTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        root = Files.createTempDirectory("fuzzytest").toFile().getCanonicalFile();
+        template = new PlainBlock(new FileWrapper(getCopyrightFile())).contents();
+        assertTrue(template.contains("YYYY, "));
+    }
+
+    protected void tearDown() throws Exception
+    {
+        File[] children = root.listFiles();
+        if (children != null) {
+            for (File child : children)
+                child.delete();
+        }
+        root.delete();
+    }
+
+    public void testYearsAreFree() throws Exception
+    {
+        for (String years : new String[]{"2011, ", "1997, 2011, ", "1997-2011 "}) {
+            assertEquals(years, 0, validate(header(years, 0), 0));
+            assertEquals(years, 0, validate(header(years, 3), 3));
+            assertEquals(years, 1, validate(header(years, 4), 3));
+        }
+    }
+
+    public void testExactWithoutFuzzy() throws Exception
+    {
+        assertEquals(0, validate(header("1997, 2011, ", 0), -1));
+        assertEquals(1, validate(header("1997, 2011, ", 1), -1));
+    }
+
+    // The template as a Java comment, with years and the first typos of TYPOS
+    private String header(String years, int typos)
+    {
+        String text = template.replace("YYYY, ", years);
+        for (int i = 0; i < typos; i++) {
+            assertTrue(TYPOS[i][0], text.contains(TYPOS[i][0]));
+            text = text.replace(TYPOS[i][0], TYPOS[i][1]);
+        }
+        StringBuilder sb = new StringBuilder("/*\n");
+        for (String line : text.split("\n"))
+            sb.append(" *").append(line).append('\n');
+        return sb.append(" */\n\npublic class Fuzzy {\n}\n").toString();
+    }
+
+    // Validate a file with contents, and return the number of validation errors
+    private int validate(String contents, int fuzzy) throws Exception
+    {
+        write(new File(root, "Fuzzy.java"), contents);
+        List<String> args = new ArrayList<String>();
+        args.add("-dryrun");
+        args.add("false");
+        args.add("-roots");
+        args.add(root.getPath());
+        args.add("-copyright");
+        args.add(getCopyrightFile().getPath());
+        if (fuzzy >= 0) {
+            args.add("-options");
+            args.add("fuzzy:" + fuzzy);
+        }
+        ArgParser<LicenseTool.Arguments> ap = new ArgParser<LicenseTool.Arguments>(LicenseTool.Arguments.class);
+        RunConfig config = new RunConfig(ap.parse(args.toArray(new String[args.size()])));
+        final List<String> errors = new ArrayList<String>();
+        Handler handler = new Handler() {
+            public void publish(LogRecord record) {
+                if (record.getLevel().intValue() >= Level.WARNING.intValue())
+                    errors.add(record.getMessage());
+            }
+            public void flush() {
+            }
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger("org.jvnet.licensetool");
+        logger.addHandler(handler);
+        try {
+            new Scanner(config, config.getRoots()).scan(new RecognizerFactory().getDefaultRecognizer(),
+                    new ActionFactory(null).getValidateCopyrightAction(config, null));
+        } finally {
+            logger.removeHandler(handler);
+        }
+        return errors.size();
+    }
+
+    private static void write(File file, String text) throws IOException
+    {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private File getCopyrightFile()
+    {
+        return new File(getRoot(), "src/test/resources/copyright/copyright.txt");
+    }
+
+    private File getRoot() {
+        String classnameAsResource  = this.getClass().getName().replace('.', '/') + ".class";
+        URL res = getClass().getClassLoader().getResource(classnameAsResource);
+        File f = new File(res.getFile());
+        while(!new File(f,"pom.xml").exists())
+            f = f.getParentFile();
+        return f;
+    }
+}
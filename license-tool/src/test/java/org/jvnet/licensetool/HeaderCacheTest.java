@@ -0,0 +1,212 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.file.CommentBlock;
+import org.jvnet.licensetool.file.FileRecognizer;
+import org.jvnet.licensetool.file.FileWrapper;
+import org.jvnet.licensetool.file.ParsedFile;
+import org.jvnet.licensetool.file.PlainBlock;
+import org.jvnet.licensetool.util.CompiledCopyrightTemplate;
+import org.jvnet.licensetool.util.CopyrightParser;
+import org.jvnet.licensetool.util.HeaderCache;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A cached header gives every file the results, and the diagnostics, that
+ * parsing it again would have.
+ */
+public class HeaderCacheTest
+    extends TestCase
+{
+    // CopyrightParser does not recognize years written as a list
+    private static final String HEADER = "/*\n * Copyright 1997, 2011, Sun Microsystems, Inc.\n */\n";
+
+    private File dir;
+
+    public HeaderCacheTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( HeaderCacheTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("headercachetest").toFile().getCanonicalFile();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children)
+                child.delete();
+        }
+        dir.delete();
+    }
+
+    public void testUnrecognizedYears() throws Exception
+    {
+        HeaderCache cache = new HeaderCache(new CompiledCopyrightTemplate(new PlainBlock(" Copyright YYYY, Sun\n")));
+        List<String> traces = new ArrayList<String>();
+        Logger logger = Logger.getLogger(CopyrightParser.class.getName());
+        Level level = logger.getLevel();
+        Handler handler = collect(traces);
+        logger.setLevel(Level.FINE);
+        logger.addHandler(handler);
+        try {
+            for (String name : new String[]{"First.java", "Second.java", "Third.java"}) {
+                ParsedFile pfile = parse(name, HEADER + "class " + name.substring(0, name.indexOf('.')) + " {\n}\n");
+                CommentBlock block = pfile.getComments().get(0);
+                cache.parseCopyright(block, pfile);
+                assertTrue(block.hasTag(Tags.COPYRIGHT_BLOCK_TAG));
+                assertEquals("Sun Microsystems, Inc.", block.getCopyright().getLicensor());
+                assertEquals(name, 1, countContaining(traces, "in file:" + pfile.getPath()));
+            }
+        } finally {
+            logger.removeHandler(handler);
+            logger.setLevel(level);
+        }
+        assertEquals(3, traces.size());
+        assertEquals(3, cache.getParseLookups());
+        assertEquals(2, cache.getParseHits());
+        assertEquals(0, cache.getMatchLookups());
+    }
+
+    public void testCountsApart() throws Exception
+    {
+        HeaderCache cache = new HeaderCache(new CompiledCopyrightTemplate(new PlainBlock(" Copyright YYYY, Sun\n")));
+        String header = "/*\n * Copyright 2011, Sun\n */\n";
+        for (String name : new String[]{"First.java", "Second.java"}) {
+            ParsedFile pfile = parse(name, header + "class " + name.substring(0, name.indexOf('.')) + " {\n}\n");
+            CommentBlock block = pfile.getComments().get(0);
+            cache.parseCopyright(block, pfile);
+            assertEquals("2011", block.getCopyright().getStartYear());
+            assertTrue(cache.matches(block));
+        }
+        assertEquals(2, cache.getParseLookups());
+        assertEquals(1, cache.getParseHits());
+        assertEquals(2, cache.getMatchLookups());
+        assertEquals(1, cache.getMatchHits());
+        assertEquals("Header cache: parse 2 lookups, 1 hits (50.0%); match 2 lookups, 1 hits (50.0%); 1 distinct comments",
+                cache.summary());
+    }
+
+    /**
+     * A comment first seen by matches, as after the cache was emptied, is
+     * still parsed the first time parseCopyright is asked for it.
+     */
+    public void testMatchedBeforeParsed() throws Exception
+    {
+        HeaderCache cache = new HeaderCache(new CompiledCopyrightTemplate(new PlainBlock(" Copyright YYYY, Sun\n")));
+        ParsedFile first = parse("First.java", HEADER + "class First {\n}\n");
+        assertFalse(cache.matches(first.getComments().get(0)));
+        ParsedFile second = parse("Second.java", HEADER + "class Second {\n}\n");
+        CommentBlock block = second.getComments().get(0);
+        cache.parseCopyright(block, second);
+        assertTrue(block.hasTag(Tags.COPYRIGHT_BLOCK_TAG));
+        assertEquals(0, cache.getParseHits());
+        cache.parseCopyright(first.getComments().get(0), first);
+        assertEquals(1, cache.getParseHits());
+        assertTrue(first.getComments().get(0).hasTag(Tags.COPYRIGHT_BLOCK_TAG));
+    }
+
+    private ParsedFile parse(String name, String contents) throws IOException
+    {
+        File file = new File(dir, name);
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+        FileRecognizer recognizer = new RecognizerFactory().getDefaultRecognizer();
+        FileWrapper fw = new FileWrapper(file);
+        try {
+            return recognizer.getParser(fw).parseFile(fw);
+        } finally {
+            fw.close();
+        }
+    }
+
+    private static Handler collect(final List<String> messages)
+    {
+        Handler handler = new Handler() {
+            public void publish(LogRecord record) {
+                if (record.getMessage().startsWith("Error: Year pattern not recognized"))
+                    messages.add(record.getMessage());
+            }
+            public void flush() {
+            }
+            public void close() {
+            }
+        };
+        handler.setLevel(Level.ALL);
+        return handler;
+    }
+
+    private static int countContaining(List<String> messages, String text)
+    {
+        int count = 0;
+        for (String message : messages) {
+            if (message.contains(text))
+                count++;
+        }
+        return count;
+    }
+}
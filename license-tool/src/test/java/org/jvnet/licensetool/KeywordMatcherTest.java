@@ -0,0 +1,159 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.util.KeywordMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Differential test: KeywordMatcher.findAll must find exactly the keywords
+ * that String.contains finds.
+ */
+public class KeywordMatcherTest
+    extends TestCase
+{
+    public KeywordMatcherTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( KeywordMatcherTest.class );
+    }
+
+    /**
+     * Keywords that are prefixes, suffixes and infixes of each other.
+     */
+    public void testOverlapping()
+    {
+        List<String> keywords = Arrays.asList("he", "she", "his", "hers", "s", "ushers");
+        KeywordMatcher matcher = new KeywordMatcher(keywords);
+        assertEquals(keywords.size(), matcher.size());
+        for (int k = 0; k < keywords.size(); k++)
+            assertEquals(keywords.get(k), matcher.getKeyword(k));
+        assertEquals(bits(0, 1, 3, 4, 5), matcher.findAll("ushers"));
+        assertEquals(bits(0, 1, 4), matcher.findAll("xshe"));
+        assertEquals(bits(0, 3, 4), matcher.findAll("hhers"));
+        assertEquals(bits(2, 4), matcher.findAll("this"));
+        assertEquals(bits(), matcher.findAll("HERS"));
+        assertEquals(bits(), matcher.findAll(""));
+        for (String text : new String[]{"ushers", "hishers", "shhe", "hehers", "sh", "usher"})
+            assertAgree(keywords, text);
+    }
+
+    /**
+     * The empty keyword occurs in every text, the empty one included.
+     */
+    public void testEmptyKeyword()
+    {
+        List<String> keywords = Arrays.asList("", "ab");
+        KeywordMatcher matcher = new KeywordMatcher(keywords);
+        assertEquals(bits(0), matcher.findAll(""));
+        assertEquals(bits(0), matcher.findAll("ba"));
+        assertEquals(bits(0, 1), matcher.findAll("cab"));
+        assertEquals(bits(0), new KeywordMatcher(Arrays.asList("")).findAll("anything"));
+        assertEquals(bits(), new KeywordMatcher(new ArrayList<String>()).findAll("anything"));
+    }
+
+    /**
+     * A keyword given twice is reported at both of its indexes.
+     */
+    public void testDuplicates()
+    {
+        List<String> keywords = Arrays.asList("Copyright", "Oracle", "Copyright", "", "");
+        KeywordMatcher matcher = new KeywordMatcher(keywords);
+        assertEquals(bits(0, 2, 3, 4), matcher.findAll("Copyright 2010 Sun"));
+        assertEquals(bits(0, 1, 2, 3, 4), matcher.findAll("Copyright 2010 Oracle"));
+        assertEquals(bits(3, 4), matcher.findAll("copyright"));
+    }
+
+    /**
+     * Random keywords and texts over a small alphabet, so that keywords
+     * overlap often.
+     */
+    public void testRandom()
+    {
+        Random random = new Random(20100);
+        for (int ctr = 0; ctr < 2000; ctr++) {
+            List<String> keywords = new ArrayList<String>();
+            int count = random.nextInt(8);
+            for (int k = 0; k < count; k++)
+                keywords.add(randomString(random, random.nextInt(5)));
+            assertAgree(keywords, randomString(random, random.nextInt(40)));
+        }
+    }
+
+    private static void assertAgree(List<String> keywords, String text)
+    {
+        BitSet expected = new BitSet();
+        for (int k = 0; k < keywords.size(); k++) {
+            if (text.contains(keywords.get(k)))
+                expected.set(k);
+        }
+        assertEquals(keywords + " in " + text, expected, new KeywordMatcher(keywords).findAll(text));
+        assertEquals(keywords + " in " + text, expected, new KeywordMatcher(keywords).findAll(new StringBuilder(text)));
+    }
+
+    private static String randomString(Random random, int length)
+    {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            sb.append("abc\u00e9".charAt(random.nextInt(4)));
+        return sb.toString();
+    }
+
+    private static BitSet bits(int... indexes)
+    {
+        BitSet bits = new BitSet();
+        for (int index : indexes)
+            bits.set(index);
+        return bits;
+    }
+}
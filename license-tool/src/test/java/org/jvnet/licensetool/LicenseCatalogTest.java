@@ -0,0 +1,205 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.file.FileWrapper;
+import org.jvnet.licensetool.file.PlainBlock;
+import org.jvnet.licensetool.util.LicenseCatalog;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Classifying comments against a catalog of two licenses: comments that
+ * are a license, that are close to one, and that are neither.
+ */
+public class LicenseCatalogTest
+    extends TestCase
+{
+    private static final String APACHE =
+        " Copyright YYYY The Apache Software Foundation\n" +
+        "\n" +
+        " Licensed under the Apache License, Version 2.0 (the \"License\");\n" +
+        " you may not use this file except in compliance with the License.\n" +
+        " You may obtain a copy of the License at\n" +
+        "\n" +
+        "     http://www.apache.org/licenses/LICENSE-2.0\n" +
+        "\n" +
+        " Unless required by applicable law or agreed to in writing, software\n" +
+        " distributed under the License is distributed on an \"AS IS\" BASIS,\n" +
+        " WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n" +
+        " See the License for the specific language governing permissions and\n" +
+        " limitations under the License.\n";
+
+    private File dir;
+    private String cddl;
+    private LicenseCatalog catalog;
+
+    public LicenseCatalogTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( LicenseCatalogTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        cddl = new PlainBlock(new FileWrapper(new File(getRoot(), "src/test/resources/copyright/copyright.txt"))).contents();
+        dir = Files.createTempDirectory("catalogtest").toFile();
+        write(new File(dir, "cddl.txt"), cddl);
+        write(new File(dir, "apache.txt"), APACHE);
+        catalog = LicenseCatalog.load(dir);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children)
+                child.delete();
+        }
+        dir.delete();
+    }
+
+    public void testLicenses()
+    {
+        assertEquals(Arrays.asList("apache", "cddl"), catalog.getLicenses());
+    }
+
+    public void testExact()
+    {
+        assertMatch("cddl", true, cddl.replace("YYYY", "1997, 2010"));
+        assertMatch("apache", true, APACHE.replace("YYYY", "2010"));
+    }
+
+    public void testNearMatch()
+    {
+        assertMatch("cddl", false, cddl.replace("YYYY", "1997, 2010")
+                .replace("Sun Microsystems, Inc.", "Oracle and/or its affiliates.")
+                .replace("glassfish/bootstrap", "packager"));
+        assertMatch("apache", false, APACHE.replace("YYYY", "2010")
+                .replace("Version 2.0", "Version 2")
+                .replace("either express or implied", "express or implied"));
+        // a template a year cannot fill in is still close to its license
+        assertMatch("apache", false, APACHE.replace("YYYY", "MMXX"));
+    }
+
+    public void testUnknown()
+    {
+        assertNull(catalog.classify(" Returns the number of files that were scanned\n and that had a header.\n"));
+        assertNull(catalog.classify(""));
+        assertNull(catalog.classify(cddl.substring(0, cddl.length() / 4).replace("YYYY", "2010")));
+        assertTrue(catalog.summary(), catalog.summary().endsWith(" unknown=3"));
+    }
+
+    public void testSummary()
+    {
+        catalog.classify(APACHE.replace("YYYY", "2010"));
+        catalog.classify(APACHE.replace("YYYY", "2011"));
+        catalog.classify(cddl.replace("YYYY", "2010"));
+        catalog.classify(" Not a license.\n");
+        assertEquals("License catalog: apache=2, cddl=1, unknown=1", catalog.summary());
+    }
+
+    /**
+     * Licenses that differ only in their version number are told apart.
+     */
+    public void testVersions() throws Exception
+    {
+        File[] children = dir.listFiles();
+        for (File child : children)
+            child.delete();
+        String cddl = " Copyright YYYY Example Inc.  This file is made available under the\n" +
+                " Common Development and Distribution License (CDDL) Version V.\n" +
+                " You may not use this file except in compliance with the License.\n";
+        write(new File(dir, "cddl-1.0.txt"), cddl.replace("V.", "1.0."));
+        write(new File(dir, "cddl-1.1.txt"), cddl.replace("V.", "1.1."));
+        catalog = LicenseCatalog.load(dir);
+        assertEquals(Arrays.asList("cddl-1.0", "cddl-1.1"), catalog.getLicenses());
+        for (String version : new String[]{"1.0", "1.1"}) {
+            String comment = cddl.replace("V.", version + ".").replace("YYYY", "2011");
+            assertMatch("cddl-" + version, true, comment);
+            assertMatch("cddl-" + version, false, comment.replace("made available", "made avaliable"));
+        }
+    }
+
+    private void assertMatch(String license, boolean exact, String comment)
+    {
+        LicenseCatalog.Match match = catalog.classify(comment);
+        assertNotNull(comment, match);
+        assertEquals(comment, license, match.getLicense());
+        assertEquals(comment, exact, match.isExact());
+        if (exact) {
+            assertEquals(license, match.toString());
+        } else {
+            assertTrue(match.toString(), match.getSimilarity() >= 0.5 && match.getSimilarity() < 1);
+        }
+    }
+
+    private static void write(File file, String text) throws IOException
+    {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private File getRoot() {
+        String classnameAsResource  = this.getClass().getName().replace('.', '/') + ".class";
+        URL res = getClass().getClassLoader().getResource(classnameAsResource);
+        File f = new File(res.getFile());
+        while(!new File(f,"pom.xml").exists())
+            f = f.getParentFile();
+        return f;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.util.LineIterator;
+import org.jvnet.licensetool.util.ToolUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Differential test: LineIterator must split data into the same lines as
+ * the "(.+?)^" regular expression ToolUtil.splitToLines used before.
+ */
+public class LineIteratorTest
+    extends TestCase
+{
+    private static final String[] DATA = {
+        "", "a", "\n", "\r", "\r\n", "\n\r", "\r\r\n", "\n\n",
+        "a\nb", "a\nb\n", "a\r\nb\r\n", "a\rb\r", "a\r\nb\nc\rd",
+        "a\u2028b", "a\u2029b\u2029", "a\u0085b", "\u2028\u2028", "a\r\u2028b",
+        "  \n\t\n", "line\r\n\r\nafter blank\r\n"
+    };
+
+    // the characters random data is made of: all line terminators, and some text
+    private static final String ALPHABET = "ab \t\n\r\u0085\u2028\u2029";
+
+    public LineIteratorTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( LineIteratorTest.class );
+    }
+
+    public void testFixedData()
+    {
+        for (String data : DATA) {
+            assertSameLines(data);
+        }
+    }
+
+    public void testRandomData()
+    {
+        Random random = new Random(20101);
+        for (int ctr = 0; ctr < 5000; ctr++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(20);
+            for (int i = 0; i < length; i++) {
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            assertSameLines(sb.toString());
+        }
+    }
+
+    public void testLineContents()
+    {
+        LineIterator lines = new LineIterator(new StringBuilder("  first\r\n\tsecond\u2028third"));
+        assertTrue(lines.next());
+        assertEquals("  first\r\n", lines.lineAsString());
+        assertEquals(7, lines.contentEnd());
+        assertTrue(lines.startsWith("  fi"));
+        assertFalse(lines.isBlank());
+        assertTrue(lines.next());
+        assertEquals("\tsecond\u2028", lines.lineAsString());
+        assertEquals(9, lines.start());
+        assertEquals(17, lines.end());
+        assertTrue(lines.next());
+        assertEquals("third", lines.line().toString());
+        assertFalse(lines.next());
+    }
+
+    private static void assertSameLines(String data)
+    {
+        List<String> expected = regexSplit(data);
+        List<String> got = new ArrayList<String>();
+        LineIterator lines = new LineIterator(data);
+        while (lines.next()) {
+            got.add(lines.lineAsString());
+        }
+        assertEquals(escape(data), expected, got);
+        assertEquals(escape(data), expected, ToolUtil.splitToLines(data));
+    }
+
+    // The implementation ToolUtil.splitToLines had before LineIterator
+    private static List<String> regexSplit(String data)
+    {
+        List<String> lines = new ArrayList<String>();
+        Pattern pattern = Pattern.compile("(.+?)^", Pattern.MULTILINE | Pattern.DOTALL);
+        Matcher matcher = pattern.matcher(data);
+        int index = 0;
+        while (matcher.find()) {
+            lines.add(matcher.group());
+            index = matcher.end();
+        }
+        lines.add(data.substring(index));
+        return lines;
+    }
+
+    private static String escape(String data)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (char c : data.toCharArray()) {
+            if (c < ' ' || c > '~') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
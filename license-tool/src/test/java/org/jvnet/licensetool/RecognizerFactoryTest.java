@@ -0,0 +1,214 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.file.FileParser;
+import org.jvnet.licensetool.file.FileRecognizer;
+import org.jvnet.licensetool.file.FileWrapper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Recognition of binary files by their first bytes.
+ */
+public class RecognizerFactoryTest
+    extends TestCase
+{
+    private static final int[][] SIGNATURES = {
+        {0xCA, 0xFE, 0xBA, 0xBE},
+        {'P', 'K', 0x03, 0x04},
+        {'P', 'K', 0x05, 0x06},
+        {'P', 'K', 0x07, 0x08},
+        {0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A},
+        {'G', 'I', 'F', '8', '7', 'a'},
+        {'G', 'I', 'F', '8', '9', 'a'},
+        {'%', 'P', 'D', 'F', '-'},
+        {0x7F, 'E', 'L', 'F'},
+        {0xFF, 0xD8, 0xFF},
+        {0x1F, 0x8B},
+        {0xFD, '7', 'z', 'X', 'Z', 0x00},
+        {'7', 'z', 0xBC, 0xAF, 0x27, 0x1C},
+        {0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1},
+        {0xFE, 0xED, 0xFA, 0xCE},
+        {0xFE, 0xED, 0xFA, 0xCF},
+        {0xCE, 0xFA, 0xED, 0xFE},
+        {0xCF, 0xFA, 0xED, 0xFE},
+        // bzip2: a block, and an empty stream
+        {'B', 'Z', 'h', '9', 0x31, 0x41, 0x59, 0x26, 0x53, 0x59},
+        {'B', 'Z', 'h', '1', 0x17, 0x72, 0x45, 0x38, 0x50, 0x90},
+    };
+
+    public RecognizerFactoryTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RecognizerFactoryTest.class );
+    }
+
+    public void testSignatures()
+    {
+        for (int[] signature : SIGNATURES) {
+            byte[] head = bytes(signature);
+            assertTrue(Arrays.toString(signature), RecognizerFactory.isBinary(head));
+            // followed by text
+            assertTrue(Arrays.toString(signature), RecognizerFactory.isBinary(concat(head, text("data\n"))));
+            // cut short
+            if (signature.length > 1) {
+                assertFalse(Arrays.toString(signature),
+                        RecognizerFactory.isBinary(Arrays.copyOf(head, signature.length - 1)));
+            }
+        }
+    }
+
+    public void testTar()
+    {
+        byte[] head = new byte[512];
+        Arrays.fill(head, (byte) ' ');
+        System.arraycopy(text("ustar"), 0, head, 257, 5);
+        assertTrue(RecognizerFactory.isBinary(head));
+        assertFalse(RecognizerFactory.isBinary(Arrays.copyOf(head, 260)));
+    }
+
+    public void testText()
+    {
+        assertFalse(RecognizerFactory.isBinary(new byte[0]));
+        assertFalse(RecognizerFactory.isBinary(text("public class Text {\n}\n")));
+        assertFalse(RecognizerFactory.isBinary(text("PK is not a zip file\n")));
+        // text that starts like bzip2
+        assertFalse(RecognizerFactory.isBinary(text("BZh")));
+        assertFalse(RecognizerFactory.isBinary(text("BZh is the start of a bzip2 file\n")));
+        assertFalse(RecognizerFactory.isBinary(text("BZh9 and then some text\n")));
+        assertFalse(RecognizerFactory.isBinary(concat(text("BZh0"), bytes(0x31, 0x41, 0x59, 0x26, 0x53, 0x59))));
+    }
+
+    public void testNul()
+    {
+        assertTrue(RecognizerFactory.isBinary(bytes(0)));
+        assertTrue(RecognizerFactory.isBinary(concat(text("text, then"), bytes(0))));
+        // UTF-16 text has a NUL in every ASCII character, but a byte order mark
+        assertFalse(RecognizerFactory.isBinary(utf16("UTF-16BE", 0xFE, 0xFF)));
+        assertFalse(RecognizerFactory.isBinary(utf16("UTF-16LE", 0xFF, 0xFE)));
+        // without one it is taken as binary
+        assertTrue(RecognizerFactory.isBinary(bytes(0, 't', 0, 'x', 0, 't')));
+    }
+
+    /**
+     * Files without a known suffix are recognized by their contents.
+     */
+    public void testDefaultRecognizer() throws Exception
+    {
+        FileRecognizer recognizer = new RecognizerFactory().getDefaultRecognizer();
+        File file = File.createTempFile("recognizer", "");
+        try {
+            write(file, bytes(0x1F, 0x8B, 0x08, 0x00));
+            assertTrue(getParser(recognizer, file) instanceof FileParserFactory.BinaryFileParser);
+            write(file, text("BZh is text\n"));
+            assertFalse(getParser(recognizer, file) instanceof FileParserFactory.BinaryFileParser);
+            write(file, text("#!/bin/sh\necho BZh\n"));
+            assertTrue(getParser(recognizer, file) instanceof FileParserFactory.ShellLikeFileParser);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static FileParser getParser(FileRecognizer recognizer, File file) throws IOException
+    {
+        FileWrapper fw = new FileWrapper(file);
+        try {
+            return recognizer.getParser(fw);
+        } finally {
+            fw.close();
+        }
+    }
+
+    private static void write(File file, byte[] contents) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] utf16(String charset, int bom1, int bom2)
+    {
+        try {
+            return concat(bytes(bom1, bom2), "public class Text {\n}\n".getBytes(charset));
+        } catch (IOException exc) {
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    private static byte[] text(String s)
+    {
+        try {
+            return s.getBytes("US-ASCII");
+        } catch (IOException exc) {
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    private static byte[] bytes(int... values)
+    {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++)
+            result[i] = (byte) values[i];
+        return result;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b)
+    {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
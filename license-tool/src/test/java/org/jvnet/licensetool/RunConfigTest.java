@@ -0,0 +1,148 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.argparser.ArgParser;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Parsing of the extra options into a RunConfig.
+ */
+public class RunConfigTest
+    extends TestCase
+{
+    public RunConfigTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RunConfigTest.class );
+    }
+
+    public void testNoOptions() throws Exception
+    {
+        RunConfig config = parse();
+        assertEquals(-1, config.getFuzzyDistance());
+        assertEquals(Collections.<String>emptyList(), config.getLicensors());
+        assertFalse(config.isCheckEmpty());
+        assertFalse(config.isHeaderOnly());
+        assertFalse(config.isFsync());
+    }
+
+    public void testFuzzy() throws Exception
+    {
+        assertEquals(10, parse("fuzzy").getFuzzyDistance());
+        assertEquals(3, parse("fuzzy:3").getFuzzyDistance());
+        assertEquals(0, parse("fuzzy:0").getFuzzyDistance());
+        // the last one given wins
+        assertEquals(10, parse("fuzzy:3,fuzzy").getFuzzyDistance());
+        assertEquals(5, parse("fuzzy,fuzzy:5").getFuzzyDistance());
+        // not a fuzzy option
+        assertEquals(-1, parse("fuzzyness").getFuzzyDistance());
+    }
+
+    public void testBadFuzzy() throws Exception
+    {
+        for (String option : new String[]{"fuzzy:x", "fuzzy:", "fuzzy:-1", "fuzzy:1.5"}) {
+            try {
+                parse(option);
+                fail(option);
+            } catch (IllegalArgumentException exc) {
+                assertEquals("Bad edit distance in option " + option, exc.getMessage());
+            }
+        }
+    }
+
+    public void testLicensors() throws Exception
+    {
+        RunConfig config = parse("licensor:Acme Corp,checkEmpty,licensor:Example Inc.,fuzzy:2");
+        assertEquals(Arrays.asList("Acme Corp", "Example Inc."), config.getLicensors());
+        assertTrue(config.isCheckEmpty());
+        assertEquals(2, config.getFuzzyDistance());
+        assertEquals(Arrays.asList("licensor:Acme Corp", "checkEmpty", "licensor:Example Inc.", "fuzzy:2"),
+                config.getOptions());
+        try {
+            config.getLicensors().add("Other");
+            fail();
+        } catch (UnsupportedOperationException exc) {
+            // expected
+        }
+    }
+
+    private RunConfig parse() throws Exception
+    {
+        return parse(new String[0]);
+    }
+
+    private RunConfig parse(String options) throws Exception
+    {
+        return parse(new String[]{"-options", options});
+    }
+
+    private RunConfig parse(String[] extra) throws Exception
+    {
+        String[] args = Arrays.copyOf(new String[]{
+                "-roots", getRoot().getPath(),
+                "-copyright", new File(getRoot(), "src/test/resources/copyright/copyright.txt").getPath()},
+                4 + extra.length);
+        System.arraycopy(extra, 0, args, 4, extra.length);
+        ArgParser<LicenseTool.Arguments> ap = new ArgParser<LicenseTool.Arguments>(LicenseTool.Arguments.class);
+        return new RunConfig(ap.parse(args));
+    }
+
+    private File getRoot() {
+        String classnameAsResource  = this.getClass().getName().replace('.', '/') + ".class";
+        URL res = getClass().getClassLoader().getResource(classnameAsResource);
+        File f = new File(res.getFile());
+        while(!new File(f,"pom.xml").exists())
+            f = f.getParentFile();
+        return f;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.argparser.ArgParser;
+import org.jvnet.licensetool.file.ParsedFile;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A parallel scan reports the same records in the same order as a
+ * sequential one, and stops at the same file when the action returns false.
+ */
+public class ScannerTest
+    extends TestCase
+{
+    private static final Logger LOGGER = Logger.getLogger(ScannerTest.class.getName());
+
+    private File root;
+
+    public ScannerTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ScannerTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        root = Files.createTempDirectory("scannertest").toFile().getCanonicalFile();
+        for (String dir : new String[]{"a", "a/b", "a/b/c", "d", "e/f"}) {
+            for (int ctr = 0; ctr < 8; ctr++)
+                write(new File(root, dir + "/File" + ctr + ".java"), "/**\n * File " + ctr + "\n */\nclass File" + ctr + " {\n}\n");
+        }
+        write(new File(root, "Top.java"), "class Top {\n}\n");
+    }
+
+    protected void tearDown() throws Exception
+    {
+        delete(root);
+    }
+
+    public void testSameOrder() throws Exception
+    {
+        List<String> sequential = scan(1, null);
+        assertEquals(41, sequential.size());
+        for (int threads : new int[]{2, 4, 8})
+            assertEquals(sequential, scan(threads, null));
+    }
+
+    public void testStop() throws Exception
+    {
+        String stopAt = new File(root, "a/b/File3.java").getPath();
+        List<String> sequential = scan(1, stopAt);
+        assertEquals(stopAt, sequential.get(sequential.size() - 1));
+        assertTrue(sequential.size() < 41);
+        for (int threads : new int[]{2, 4, 8})
+            assertEquals(sequential, scan(threads, stopAt));
+    }
+
+    // Scan root with an action that reports every file it is given, and
+    // returns false for stopAt; return the reported paths in report order
+    private List<String> scan(int threads, final String stopAt) throws Exception
+    {
+        ArgParser<LicenseTool.Arguments> ap = new ArgParser<LicenseTool.Arguments>(LicenseTool.Arguments.class);
+        RunConfig config = new RunConfig(ap.parse(new String[]{
+                "-dryrun", "false",
+                "-threads", Integer.toString(threads),
+                "-roots", root.getPath(),
+                "-copyright", new File(getRoot(), "src/test/resources/copyright/copyright.txt").getPath()}));
+        final Random random = new Random(threads);
+        Scanner.Action action = new Scanner.Action() {
+            public boolean evaluate(ParsedFile pfile) {
+                try {
+                    // let the threads finish out of order
+                    Thread.sleep(random.nextInt(5));
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                }
+                LOGGER.warning(pfile.getPath());
+                return !pfile.getPath().equals(stopAt);
+            }
+        };
+        final List<String> reported = Collections.synchronizedList(new ArrayList<String>());
+        Handler handler = new Handler() {
+            public void publish(LogRecord record) {
+                if (record.getLoggerName().equals(LOGGER.getName()))
+                    reported.add(record.getMessage());
+            }
+            public void flush() {
+            }
+            public void close() {
+            }
+        };
+        handler.setLevel(Level.ALL);
+        Logger logger = Logger.getLogger("org.jvnet.licensetool");
+        boolean useParentHandlers = logger.getUseParentHandlers();
+        logger.addHandler(handler);
+        logger.setUseParentHandlers(false);
+        try {
+            boolean result = new Scanner(config, config.getRoots())
+                    .scan(new RecognizerFactory().getDefaultRecognizer(), action);
+            assertEquals(stopAt == null, result);
+        } finally {
+            logger.removeHandler(handler);
+            logger.setUseParentHandlers(useParentHandlers);
+        }
+        return reported;
+    }
+
+    private static void write(File file, String text) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+
+    private File getRoot() {
+        String classnameAsResource  = this.getClass().getName().replace('.', '/') + ".class";
+        URL res = getClass().getClassLoader().getResource(classnameAsResource);
+        File f = new File(res.getFile());
+        while(!new File(f,"pom.xml").exists())
+            f = f.getParentFile();
+        return f;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.file.FileStamp;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * When the validation cache takes a file as unchanged, and when a saved
+ * cache is used again.
+ */
+public class ValidationCacheTest
+    extends TestCase
+{
+    private File dir;
+    private File file;
+    private File cacheFile;
+
+    public ValidationCacheTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ValidationCacheTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("cachetest").toFile();
+        file = new File(dir, "Clean.java");
+        cacheFile = new File(dir, "cache");
+        write(file, "public class Clean {\n}\n", 1000000000000L);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children)
+                child.delete();
+        }
+        dir.delete();
+    }
+
+    public void testUnchanged() throws Exception
+    {
+        ValidationCache cache = new ValidationCache(cacheFile, "config");
+        assertFalse(cache.isClean(file));
+        FileStamp stamp = FileStamp.of(file);
+        assertNull(stamp.getDigest());
+        cache.markClean(file, stamp);
+        assertTrue(cache.isClean(file));
+
+        cache.save();
+        cache = new ValidationCache(cacheFile, "config");
+        cache.load();
+        assertTrue(cache.isClean(file));
+    }
+
+    public void testContentChange() throws Exception
+    {
+        ValidationCache cache = new ValidationCache(cacheFile, "config");
+        cache.markClean(file, FileStamp.of(file));
+        // same size, new time and contents
+        write(file, "public class Dirty {\n}\n", 1000000002000L);
+        assertFalse(cache.isClean(file));
+        // and it stays out of the cache once the contents are back
+        write(file, "public class Clean {\n}\n", 1000000000000L);
+        assertFalse(cache.isClean(file));
+    }
+
+    public void testSameContentsNewTime() throws Exception
+    {
+        ValidationCache cache = new ValidationCache(cacheFile, "config");
+        cache.markClean(file, FileStamp.of(file));
+        // a fresh checkout: same contents, new time
+        assertTrue(file.setLastModified(1000000004000L));
+        assertTrue(cache.isClean(file));
+        assertTrue(cache.isClean(file));
+    }
+
+    public void testChangedDuringValidation() throws Exception
+    {
+        ValidationCache cache = new ValidationCache(cacheFile, "config");
+        FileStamp stamp = FileStamp.of(file);
+        write(file, "public class Changed {\n}\n", 1000000002000L);
+        cache.markClean(file, stamp);
+        assertFalse(cache.isClean(file));
+    }
+
+    public void testConfigChange() throws Exception
+    {
+        ValidationCache cache = new ValidationCache(cacheFile, "config");
+        cache.markClean(file, FileStamp.of(file));
+        cache.save();
+
+        cache = new ValidationCache(cacheFile, "other config");
+        cache.load();
+        assertFalse(cache.isClean(file));
+
+        cache = new ValidationCache(cacheFile, "config");
+        cache.load();
+        assertTrue(cache.isClean(file));
+    }
+
+    public void testDeletedFile() throws Exception
+    {
+        ValidationCache cache = new ValidationCache(cacheFile, "config");
+        cache.markClean(file, FileStamp.of(file));
+        assertTrue(file.delete());
+        cache.save();
+        write(file, "public class Clean {\n}\n", 1000000000000L);
+        cache = new ValidationCache(cacheFile, "config");
+        cache.load();
+        assertFalse(cache.isClean(file));
+    }
+
+    private static void write(File file, String text, long lastModified) throws IOException
+    {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+        assertTrue(file.setLastModified(lastModified));
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.file;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * Reading files whole through the direct buffer decoder, and replacing them.
+ */
+public class FileWrapperTest
+    extends TestCase
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int READ_SIZE = 64 * 1024;
+
+    private File dir;
+
+    public FileWrapperTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( FileWrapperTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("filewrappertest").toFile().getCanonicalFile();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        FileWrapper.setDirectThreshold(FileWrapper.DEFAULT_DIRECT_THRESHOLD);
+        delete(dir);
+    }
+
+    /**
+     * Two, three and four byte characters that start at every offset just
+     * before the end of the first and second read.
+     */
+    public void testDecodeAcrossReads() throws Exception
+    {
+        for (String c : new String[]{"\u00e9", "\u20ac", "\ud83d\ude00"}) {
+            int size = c.getBytes(UTF8).length;
+            for (int shift = 1; shift < size; shift++) {
+                StringBuilder sb = new StringBuilder();
+                appendAscii(sb, READ_SIZE - shift);
+                sb.append(c);
+                appendAscii(sb, READ_SIZE - size);
+                sb.append(c).append(c);
+                appendAscii(sb, 100);
+                String text = sb.toString();
+                byte[] bytes = text.getBytes(UTF8);
+                assertEquals(text, decodeFile(bytes));
+                assertEquals(text, FileWrapper.decode(new TrickleChannel(bytes), bytes.length,
+                        UTF8.newDecoder()).toString());
+            }
+        }
+    }
+
+    public void testDecodeGrows() throws Exception
+    {
+        // more characters than bytes times the average the decoder assumes
+        StringBuilder sb = new StringBuilder();
+        appendAscii(sb, 3 * READ_SIZE + 17);
+        byte[] bytes = sb.toString().getBytes(UTF8);
+        assertEquals(sb.toString(), FileWrapper.decode(new TrickleChannel(bytes), 1, UTF8.newDecoder()).toString());
+        assertEquals("", FileWrapper.decode(new TrickleChannel(new byte[0]), 0, UTF8.newDecoder()).toString());
+    }
+
+    public void testReadAsCharSequence() throws Exception
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int line = 0; line < 10000; line++)
+            sb.append("Line ").append(line).append(" of a large file\n");
+        File file = new File(dir, "Large.java");
+        write(file, sb.toString().getBytes());
+
+        FileWrapper.setDirectThreshold(0);
+        assertEquals(sb.toString(), read(file).toString());
+        FileWrapper.setDirectThreshold(Long.MAX_VALUE);
+        assertEquals(sb.toString(), read(file).toString());
+    }
+
+    public void testReplaceNotCommitted() throws Exception
+    {
+        File file = new File(dir, "Kept.java");
+        String original = lines("original", 5000);
+        write(file, original.getBytes());
+
+        // the data differs at once, so the replacement gets written to disk
+        FileWrapper fw = new FileWrapper(file);
+        try {
+            fw.open(FileWrapper.OpenMode.REPLACE);
+            fw.write(lines("replaced", 5000));
+            throw new IOException("failed while writing");
+        } catch (IOException exc) {
+            assertEquals("failed while writing", exc.getMessage());
+        } finally {
+            fw.close();
+        }
+        assertEquals(original, readText(file));
+        assertEquals(1, dir.list().length);
+    }
+
+    public void testReplaceKeepsPermissions() throws Exception
+    {
+        File file = new File(dir, "script.sh");
+        write(file, "#!/bin/sh\n".getBytes());
+        Path path = file.toPath();
+        if (Files.getFileAttributeView(path, PosixFileAttributeView.class) == null)
+            return;
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-x---");
+        Files.setPosixFilePermissions(path, permissions);
+
+        assertTrue(replace(file, "#!/bin/sh\necho replaced\n"));
+        assertEquals("#!/bin/sh\necho replaced\n", readText(file));
+        assertEquals(permissions, Files.getPosixFilePermissions(path));
+    }
+
+    public void testReplaceSymlinkTarget() throws Exception
+    {
+        File target = new File(dir, "Target.java");
+        write(target, "class Target {}\n".getBytes());
+        File link = new File(dir, "Link.java");
+        try {
+            Files.createSymbolicLink(link.toPath(), target.toPath());
+        } catch (UnsupportedOperationException exc) {
+            return;
+        }
+
+        assertTrue(replace(link, "class Replaced {}\n"));
+        assertTrue(Files.isSymbolicLink(link.toPath()));
+        assertEquals(target.toPath(), Files.readSymbolicLink(link.toPath()));
+        assertEquals("class Replaced {}\n", readText(target));
+        assertEquals(2, dir.list().length);
+    }
+
+    public void testUnchangedKeepsModificationTime() throws Exception
+    {
+        File file = new File(dir, "Same.java");
+        String text = lines("same", 5000);
+        write(file, text.getBytes());
+        long modified = 1000000000000L;
+        assertTrue(file.setLastModified(modified));
+
+        assertFalse(replace(file, text));
+        assertEquals(modified, file.lastModified());
+        assertEquals(text, readText(file));
+        assertEquals(1, dir.list().length);
+    }
+
+    public void testChangedIsRewritten() throws Exception
+    {
+        File file = new File(dir, "Changed.java");
+        String text = lines("line", 5000);
+        // differs at the end, is longer, and is shorter
+        String[] changes = {text.substring(0, text.length() - 2) + "!\n", text + "more\n",
+                text.substring(0, text.length() / 2)};
+        for (String changed : changes) {
+            write(file, text.getBytes());
+            assertTrue(file.setLastModified(1000000000000L));
+            assertTrue(replace(file, changed));
+            assertEquals(changed, readText(file));
+            assertTrue(file.lastModified() != 1000000000000L);
+            assertEquals(1, dir.list().length);
+        }
+    }
+
+    // Replace the contents of file by text, and return what commit returned
+    private static boolean replace(File file, String text) throws IOException
+    {
+        FileWrapper fw = new FileWrapper(file);
+        try {
+            fw.open(FileWrapper.OpenMode.REPLACE);
+            fw.write(text);
+            return fw.commit();
+        } finally {
+            fw.close();
+        }
+    }
+
+    static String lines(String word, int count)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int line = 0; line < count; line++)
+            sb.append(word).append(' ').append(line).append('\n');
+        return sb.toString();
+    }
+
+    static String readText(File file) throws IOException
+    {
+        return new String(Files.readAllBytes(file.toPath()));
+    }
+
+    private CharSequence read(File file) throws IOException
+    {
+        FileWrapper fw = new FileWrapper(file);
+        try {
+            fw.open(FileWrapper.OpenMode.READ);
+            return fw.readAsCharSequence();
+        } finally {
+            fw.close();
+        }
+    }
+
+    private String decodeFile(byte[] bytes) throws IOException
+    {
+        File file = new File(dir, "decode.txt");
+        write(file, bytes);
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return FileWrapper.decode(in.getChannel(), bytes.length, UTF8.newDecoder()).toString();
+        } finally {
+            in.close();
+        }
+    }
+
+    // Characters that are one byte each in UTF-8
+    private static void appendAscii(StringBuilder sb, int count)
+    {
+        for (int i = 0; i < count; i++)
+            sb.append((char) ('a' + i % 26));
+    }
+
+    // Gives one byte per read
+    private static class TrickleChannel implements ReadableByteChannel
+    {
+        private final byte[] bytes;
+        private int position;
+
+        TrickleChannel(byte[] bytes)
+        {
+            this.bytes = bytes;
+        }
+
+        public int read(ByteBuffer dst)
+        {
+            if (position == bytes.length)
+                return -1;
+            dst.put(bytes[position++]);
+            return 1;
+        }
+
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        public void close()
+        {
+        }
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.file;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.jvnet.licensetool.RecognizerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Writing back a parsed file only replaces it when its blocks changed.
+ */
+public class ParsedFileTest
+    extends TestCase
+{
+    private static final long MODIFIED = 1000000000000L;
+    private static final String TEXT =
+            "/*\n * Copyright 2011 Somebody\n */\n\npackage test;\n\n/**\n * A class.\n */\npublic class Test {\n}\n";
+
+    private File dir;
+
+    public ParsedFileTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ParsedFileTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("parsedfiletest").toFile().getCanonicalFile();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children)
+                child.delete();
+        }
+        dir.delete();
+    }
+
+    public void testUnchangedKeepsModificationTime() throws Exception
+    {
+        File file = create("Test.java");
+        ParsedFile pfile = parse(file);
+        assertFalse(pfile.isDirty());
+        pfile.write();
+        assertEquals(MODIFIED, file.lastModified());
+        pfile.rewrite();
+        assertEquals(MODIFIED, file.lastModified());
+        assertEquals(TEXT, FileWrapperTest.readText(file));
+        assertEquals(1, dir.list().length);
+    }
+
+    public void testChangedIsRewritten() throws Exception
+    {
+        File file = create("Test.java");
+        ParsedFile pfile = parse(file);
+        CommentBlock header = pfile.getComments().get(0);
+        pfile.remove(header);
+        assertTrue(pfile.isDirty());
+        pfile.write();
+        assertTrue(file.lastModified() != MODIFIED);
+        String text = FileWrapperTest.readText(file);
+        assertFalse(text.contains("Copyright"));
+        assertTrue(text.contains("public class Test {"));
+        assertEquals(1, dir.list().length);
+    }
+
+    private File create(String name) throws IOException
+    {
+        File file = new File(dir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(TEXT.getBytes());
+        } finally {
+            out.close();
+        }
+        assertTrue(file.setLastModified(MODIFIED));
+        return file;
+    }
+
+    private static ParsedFile parse(File file) throws IOException
+    {
+        FileWrapper fw = new FileWrapper(file);
+        try {
+            return new RecognizerFactory().getDefaultRecognizer().getParser(fw).parseFile(fw);
+        } finally {
+            fw.close();
+        }
+    }
+}
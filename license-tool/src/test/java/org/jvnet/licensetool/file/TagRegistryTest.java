@@ -0,0 +1,98 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.file;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Tag bit positions, and what happens once all of them are taken.  The
+ * overflow is tested on a registry of its own, since the one used by all
+ * Blocks cannot be reset.
+ */
+public class TagRegistryTest
+    extends TestCase
+{
+    public TagRegistryTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TagRegistryTest.class );
+    }
+
+    public void testOverflow()
+    {
+        TagRegistry registry = new TagRegistry();
+        for (int ctr = 0; ctr < TagRegistry.MAX_TAGS; ctr++) {
+            assertEquals(-1, registry.lookup("tag" + ctr));
+            assertEquals(ctr, registry.bit("tag" + ctr));
+            assertEquals("tag" + ctr, registry.name(ctr));
+        }
+        // no position is left for new tags, but the old ones keep theirs
+        assertEquals(-1, registry.bit("tag" + TagRegistry.MAX_TAGS));
+        assertEquals(-1, registry.lookup("tag" + TagRegistry.MAX_TAGS));
+        assertEquals(-1, registry.bit("another"));
+        assertEquals(0, registry.bit("tag0"));
+        assertEquals(TagRegistry.MAX_TAGS - 1, registry.lookup("tag" + (TagRegistry.MAX_TAGS - 1)));
+    }
+
+    public void testBlockTags()
+    {
+        Block block = new PlainBlock("text");
+        block.addTag("TagRegistryTest.a");
+        block.addTag("TagRegistryTest.b");
+        assertTrue(block.hasTag("TagRegistryTest.a"));
+        assertFalse(block.hasTag("TagRegistryTest.c"));
+        assertTrue(block.hasTags("TagRegistryTest.a", "TagRegistryTest.b"));
+        assertFalse(block.hasTags("TagRegistryTest.a", "TagRegistryTest.c"));
+        assertTrue(block.hasTags(Block.tagMask("TagRegistryTest.a", "TagRegistryTest.b")));
+        assertFalse(block.hasTags(Block.tagMask("TagRegistryTest.a", "TagRegistryTest.c")));
+        assertEquals(new HashSet<String>(Arrays.asList("TagRegistryTest.a", "TagRegistryTest.b")),
+                block.getTags());
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 1997-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.licensetool.file;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The git index and the per file git query give the same years, for paths
+ * git would quote and for changes that came in through a merge.  Skipped
+ * if git cannot be run.
+ */
+public class VCSTest
+    extends TestCase
+{
+    private File root;
+
+    public VCSTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( VCSTest.class );
+    }
+
+    protected void setUp() throws Exception
+    {
+        root = Files.createTempDirectory("vcstest").toFile().getCanonicalFile();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        delete(root);
+    }
+
+    public void testGitIndex() throws Exception
+    {
+        if (!git(null, "--version"))
+            return;
+        assertTrue(git(null, "init", "-q", "."));
+        git(null, "config", "user.email", "test@example.com");
+        git(null, "config", "user.name", "test");
+        String[] names = {"Plain.java", "Quote\"d.java", "Back\\slash.java", "Tab\tbed.java", "Merged.java"};
+        for (String name : names)
+            write(new File(root, name), name + "\n");
+        assertTrue(git("2008-06-01T12:00:00", "add", "-A"));
+        assertTrue(git("2008-06-01T12:00:00", "commit", "-q", "-m", "first"));
+        assertTrue(git(null, "checkout", "-q", "-b", "side"));
+        write(new File(root, "Merged.java"), "changed on a branch\n");
+        assertTrue(git("2009-06-01T12:00:00", "commit", "-q", "-a", "-m", "side"));
+        assertTrue(git(null, "checkout", "-q", "-"));
+        write(new File(root, "Quote\"d.java"), "changed\n");
+        assertTrue(git("2010-06-01T12:00:00", "commit", "-q", "-a", "-m", "main"));
+        assertTrue(git("2011-06-01T12:00:00", "merge", "-q", "--no-ff", "-m", "merge", "side"));
+
+        VCSIndex index = new VCSIndex(VCS.GIT);
+        index.index(root);
+        assertFalse(index.isEmpty());
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put("Plain.java", "2008");
+        expected.put("Quote\"d.java", "2010");
+        expected.put("Back\\slash.java", "2008");
+        expected.put("Tab\tbed.java", "2008");
+        // the year of the merge that brought the change in
+        expected.put("Merged.java", "2011");
+        for (String name : names) {
+            String path = new File(root, name).getPath();
+            assertEquals(name, expected.get(name), index.get(path));
+            assertEquals(name, expected.get(name), VCS.GIT.getLastModifiedYear(path, index));
+            assertEquals(name, expected.get(name), VCS.GIT.getLastModifiedYear(path));
+        }
+        // never committed
+        File added = new File(root, "Added.java");
+        write(added, "new\n");
+        assertTrue(index.covers(added.getPath()));
+        assertNull(VCS.GIT.getLastModifiedYear(added.getPath(), index));
+    }
+
+    // Run git in root, with the given commit date if not null; return false
+    // if it could not be run or failed
+    private boolean git(String date, String... args) throws InterruptedException
+    {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(root);
+        pb.redirectErrorStream(true);
+        if (date != null) {
+            pb.environment().put("GIT_AUTHOR_DATE", date);
+            pb.environment().put("GIT_COMMITTER_DATE", date);
+        }
+        try {
+            Process process = pb.start();
+            process.getOutputStream().close();
+            InputStream in = process.getInputStream();
+            try {
+                while (in.read() >= 0) {
+                    // discard the output
+                }
+            } finally {
+                in.close();
+            }
+            return process.waitFor() == 0;
+        } catch (IOException exc) {
+            return false;
+        }
+    }
+
+    private static void write(File file, String text) throws IOException
+    {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}